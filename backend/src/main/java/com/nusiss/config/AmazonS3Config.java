@@ -1,5 +1,6 @@
 package com.nusiss.config;
 
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.regions.Regions;
@@ -20,6 +21,16 @@ public class AmazonS3Config {
     @Value("${aws.region}")
     private String region;
 
+    // Per attempt; S3Service bounds a whole batch of uploads with aws.s3.upload-timeout-ms
+    @Value("${aws.s3.connection-timeout-ms:5000}")
+    private int connectionTimeoutMillis;
+
+    @Value("${aws.s3.request-timeout-ms:20000}")
+    private int requestTimeoutMillis;
+
+    @Value("${aws.s3.max-connections:50}")
+    private int maxConnections;
+
     @Bean
     public AmazonS3 amazonS3() {
         BasicAWSCredentials creds = new BasicAWSCredentials(accessKey, secretKey);
@@ -27,6 +38,10 @@ public class AmazonS3Config {
         return AmazonS3ClientBuilder.standard()
                 .withRegion(Regions.fromName(region))
                 .withCredentials(new AWSStaticCredentialsProvider(creds))
+                .withClientConfiguration(new ClientConfiguration()
+                        .withConnectionTimeout(connectionTimeoutMillis)
+                        .withRequestTimeout(requestTimeoutMillis)
+                        .withMaxConnections(maxConnections))
                 .build();
     }
 }
@@ -15,6 +15,7 @@ public class AuthenticateUser implements UserDetails {
     private String username;
     private String password;
     private Collection<? extends GrantedAuthority> authorities;
+    private int version; // User.credentialVersion when loaded, carried into the token
 
     public AuthenticateUser() {};
 
@@ -25,10 +26,19 @@ public class AuthenticateUser implements UserDetails {
         this.authorities = authorities;
     }
 
+    public AuthenticateUser(UUID userId, String username, String password, Collection<? extends GrantedAuthority> authorities, int version) {
+        this(userId, username, password, authorities);
+        this.version = version;
+    }
+
     public UUID getUserId() {
         return userId;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
@@ -0,0 +1,139 @@
+package com.nusiss.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// How long JDBC connections are held, per endpoint ("POST /listing/create-listing"), from the pool handing one out
+// until it is returned. Work on other threads, such as listingQueryExecutor, is recorded under "background", and
+// requests no handler pattern has been matched for yet under "unmatched", so the set of keys stays bounded.
+@Component
+public class ConnectionHoldMetrics implements BeanPostProcessor {
+
+    public static final String BACKGROUND = "background";
+    public static final String UNMATCHED = "unmatched";
+
+    private final Map<String, HoldStats> stats = new ConcurrentHashMap<>();
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof TimedDataSource)) {
+            return new TimedDataSource(dataSource);
+        }
+        return bean;
+    }
+
+    public Set<String> endpoints() {
+        return new TreeSet<>(stats.keySet());
+    }
+
+    public long holdCount(String endpoint) {
+        HoldStats holdStats = stats.get(endpoint);
+        return holdStats == null ? 0 : holdStats.count.sum();
+    }
+
+    // Connections taken for the endpoint and not yet returned
+    public long openConnections(String endpoint) {
+        HoldStats holdStats = stats.get(endpoint);
+        return holdStats == null ? 0 : holdStats.open.sum();
+    }
+
+    public long totalHoldMillis(String endpoint) {
+        HoldStats holdStats = stats.get(endpoint);
+        return holdStats == null ? 0 : holdStats.totalNanos.sum() / 1_000_000;
+    }
+
+    public long maxHoldMillis(String endpoint) {
+        HoldStats holdStats = stats.get(endpoint);
+        return holdStats == null ? 0 : holdStats.maxNanos.get() / 1_000_000;
+    }
+
+    public void clear() {
+        stats.clear();
+    }
+
+    private void opened(String endpoint) {
+        stats.computeIfAbsent(endpoint, key -> new HoldStats()).open.increment();
+    }
+
+    private void record(String endpoint, long nanos) {
+        HoldStats holdStats = stats.computeIfAbsent(endpoint, key -> new HoldStats());
+        holdStats.open.decrement();
+        holdStats.count.increment();
+        holdStats.totalNanos.add(nanos);
+        holdStats.maxNanos.accumulate(nanos);
+    }
+
+    // Read when the connection is taken, since a request's best matching pattern is set once its handler is chosen
+    private static String currentEndpoint() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+            return BACKGROUND;
+        }
+
+        HttpServletRequest request = servletAttributes.getRequest();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? request.getMethod() + " " + pattern : UNMATCHED;
+    }
+
+    private static class HoldStats {
+        private final LongAdder open = new LongAdder();
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    }
+
+    private class TimedDataSource extends DelegatingDataSource {
+
+        private TimedDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return timed(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return timed(super.getConnection(username, password));
+        }
+
+        private Connection timed(Connection connection) {
+            String endpoint = currentEndpoint();
+            long acquiredAt = System.nanoTime();
+            opened(endpoint);
+            boolean[] closed = {false};
+
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("close") && !closed[0]) {
+                            closed[0] = true;
+                            record(endpoint, System.nanoTime() - acquiredAt);
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
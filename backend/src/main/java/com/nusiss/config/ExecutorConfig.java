@@ -0,0 +1,98 @@
+package com.nusiss.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class ExecutorConfig {
+
+    // Background refresh of approximate listing counts; rejects refreshes when saturated, the stale value is still served
+    @Bean
+    public ThreadPoolTaskExecutor listingCountExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("listing-count-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    // Page, count and cart queries of one browse request run side by side here. Kept below the connection pool size
+    // so the parallel queries cannot starve each other of connections; when saturated the request thread runs the query itself.
+    @Bean
+    public ThreadPoolTaskExecutor listingQueryExecutor(@Value("${listing.query-executor.pool-size:6}") int poolSize,
+                                                       @Value("${listing.query-executor.queue-capacity:50}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("listing-query-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    // BCrypt hashing and verification for login, registration and password changes. Deliberately small with a short
+    // queue and no caller-runs fallback: a login burst is rejected with a 503 instead of tying up request threads.
+    @Bean
+    public ThreadPoolTaskExecutor passwordHashExecutor(@Value("${auth.password-executor.pool-size:4}") int poolSize,
+                                                       @Value("${auth.password-executor.queue-capacity:16}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-hash-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    // Image uploads of one listing run side by side here. Bounded so a few large listings cannot open unlimited S3
+    // connections; when saturated the request thread uploads the image itself.
+    @Bean
+    public ThreadPoolTaskExecutor imageUploadExecutor(@Value("${aws.s3.upload-executor.pool-size:8}") int poolSize,
+                                                      @Value("${aws.s3.upload-executor.queue-capacity:32}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("image-upload-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    // Parts of large image uploads. Separate from imageUploadExecutor, whose tasks wait on these parts
+    @Bean
+    public ThreadPoolTaskExecutor imagePartUploadExecutor(@Value("${aws.s3.part-upload-executor.pool-size:8}") int poolSize) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(poolSize * 4);
+        executor.setThreadNamePrefix("image-part-upload-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    // Thumbnail and display image generation. Decoding and scaling are CPU-bound, so only a couple of threads; work that
+    // does not fit the queue is rejected, the listing keeps showing its original until the derivatives are requested again.
+    @Bean
+    public ThreadPoolTaskExecutor imageDerivativeExecutor(@Value("${image.derivative-executor.pool-size:2}") int poolSize,
+                                                          @Value("${image.derivative-executor.queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("image-derivative-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
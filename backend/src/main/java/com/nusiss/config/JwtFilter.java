@@ -1,28 +1,30 @@
 package com.nusiss.config;
 
-import com.nusiss.service.UserService;
-import com.nusiss.util.JwtUtil;
+import com.nusiss.service.CredentialVersions;
+import com.nusiss.service.VerifiedTokenCache;
+import com.nusiss.util.JwtClaims;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
 
 @Component
 public class JwtFilter extends OncePerRequestFilter {
 
     @Autowired
-    private JwtUtil jwtUtil;
+    private VerifiedTokenCache verifiedTokenCache;
 
     @Autowired
-    private UserService userDetailsService;
+    private CredentialVersions credentialVersions;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
@@ -39,25 +41,15 @@ public class JwtFilter extends OncePerRequestFilter {
 
 
         final String authHeader = request.getHeader("Authorization");
-        String username = null;
-        String jwt = null;
 
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            jwt = authHeader.substring(7);
-            username = jwtUtil.extractUsername(jwt);
-        }
-
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        if (authHeader != null && authHeader.startsWith("Bearer ") && SecurityContextHolder.getContext().getAuthentication() == null) {
+            // The principal comes from the signed claims; only tokens from before the user's last credential change are refused
+            Optional<JwtClaims> claims = verifiedTokenCache.verify(authHeader.substring(7))
+                    .filter(verified -> credentialVersions.isCurrent(verified.getUserId(), verified.getVersion()));
 
-            AuthenticateUser authenticateUser = new AuthenticateUser(
-                    ((AuthenticateUser) userDetails).getUserId(),
-                    userDetails.getUsername(),
-                    userDetails.getPassword(),
-                    userDetails.getAuthorities()
-            );
+            if (claims.isPresent()) {
+                AuthenticateUser authenticateUser = new AuthenticateUser(claims.get().getUserId(), claims.get().getUsername(), null, List.of());
 
-            if (jwtUtil.validateToken(jwt)) {
                 UsernamePasswordAuthenticationToken authToken =
                         new UsernamePasswordAuthenticationToken(authenticateUser, null, authenticateUser.getAuthorities());
 
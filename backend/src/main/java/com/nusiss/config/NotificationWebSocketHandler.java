@@ -1,9 +1,8 @@
 package com.nusiss.config;
 
-import com.nusiss.entity.User;
-import com.nusiss.repository.UserRepository;
-import com.nusiss.util.JwtUtil;
-import jakarta.persistence.EntityNotFoundException;
+import com.nusiss.service.CredentialVersions;
+import com.nusiss.service.VerifiedTokenCache;
+import com.nusiss.util.JwtClaims;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
@@ -12,29 +11,29 @@ import org.springframework.web.socket.handler.TextWebSocketHandler;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class NotificationWebSocketHandler extends TextWebSocketHandler {
 
-    private final JwtUtil jwtUtil;
-    private final UserRepository userRepository;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final CredentialVersions credentialVersions;
 
     private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
 
-     NotificationWebSocketHandler(JwtUtil jwtUtil, UserRepository userRepository) {
-        this.jwtUtil = jwtUtil;
-        this.userRepository = userRepository;
+     NotificationWebSocketHandler(VerifiedTokenCache verifiedTokenCache, CredentialVersions credentialVersions) {
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.credentialVersions = credentialVersions;
     }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         String token = extractToken(session);
-        if (token != null && jwtUtil.validateToken(token)) {
+        Optional<JwtClaims> claims = token == null ? Optional.empty() : verifiedTokenCache.verify(token)
+                .filter(verified -> credentialVersions.isCurrent(verified.getUserId(), verified.getVersion()));
 
-            String username = jwtUtil.extractUsername(token);
-            User user = userRepository.findByUsernameIgnoreCase(username).orElseThrow(() -> new EntityNotFoundException("User not found"));
-
-            sessions.put(user.getId().toString(), session);
+        if (claims.isPresent()) {
+            sessions.put(claims.get().getUserId().toString(), session);
         } else {
             session.close(CloseStatus.NOT_ACCEPTABLE);
         }
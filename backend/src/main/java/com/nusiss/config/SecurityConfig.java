@@ -1,7 +1,7 @@
 package com.nusiss.config;
 
+import com.nusiss.service.PasswordHasher;
 import com.nusiss.service.UserService;
-import com.nusiss.util.PasswordUtil;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -26,11 +26,13 @@ public class SecurityConfig {
 
     private final JwtFilter jwtFilter;
     private final UserService userService;  // Inject UserDetailService
+    private final PasswordHasher passwordHasher;
 
     // Constructor Injection for JwtFilter and UserDetailService
-    public SecurityConfig(JwtFilter jwtFilter, UserService userService) {
+    public SecurityConfig(JwtFilter jwtFilter, UserService userService, PasswordHasher passwordHasher) {
         this.jwtFilter = jwtFilter;
         this.userService = userService;
+        this.passwordHasher = passwordHasher;
     }
 
     @Bean
@@ -83,10 +85,10 @@ public class SecurityConfig {
         return configuration.getAuthenticationManager();
     }
 
-    // PasswordEncoder bean that uses PasswordUtil
+    // BCrypt runs on the bounded password pool rather than the request thread
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new PasswordUtil(); // Use your PasswordUtil class here
+        return passwordHasher;
     }
 
     // AuthenticationProvider with the PasswordEncoder
@@ -95,6 +97,7 @@ public class SecurityConfig {
         DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
         provider.setUserDetailsService(userService);  // Use your user details service to load users
         provider.setPasswordEncoder(passwordEncoder());  // Use PasswordEncoder
+        provider.setUserDetailsPasswordService(userService);  // Stores the new hash when the BCrypt cost has been raised
         return provider;
     }
 }
\ No newline at end of file
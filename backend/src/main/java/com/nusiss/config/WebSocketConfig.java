@@ -1,7 +1,7 @@
 package com.nusiss.config;
 
-import com.nusiss.repository.UserRepository;
-import com.nusiss.util.JwtUtil;
+import com.nusiss.service.CredentialVersions;
+import com.nusiss.service.VerifiedTokenCache;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
@@ -12,12 +12,12 @@ import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
 
-    private final JwtUtil jwtUtil;
-    private final UserRepository userRepository;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final CredentialVersions credentialVersions;
 
-    public WebSocketConfig(JwtUtil jwtUtil, UserRepository userRepository) {
-        this.jwtUtil = jwtUtil;
-        this.userRepository = userRepository;
+    public WebSocketConfig(VerifiedTokenCache verifiedTokenCache, CredentialVersions credentialVersions) {
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.credentialVersions = credentialVersions;
     }
 
     @Override
@@ -28,6 +28,6 @@ public class WebSocketConfig implements WebSocketConfigurer {
 
     @Bean
     public NotificationWebSocketHandler notificationWebSocketHandler() {
-        return new NotificationWebSocketHandler(jwtUtil, userRepository);
+        return new NotificationWebSocketHandler(verifiedTokenCache, credentialVersions);
     }
 }
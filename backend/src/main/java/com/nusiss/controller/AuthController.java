@@ -1,15 +1,17 @@
 package com.nusiss.controller;
 
+import com.nusiss.config.AuthenticateUser;
 import com.nusiss.dto.LoginDTO;
 import com.nusiss.dto.CreateUserDTO;
+import com.nusiss.exception.PasswordHashingBusyException;
 import com.nusiss.service.AuthService;
-import com.nusiss.service.UserService;
 import com.nusiss.service.ValidationService;
 import com.nusiss.util.JwtUtil;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.*;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -25,16 +27,14 @@ import java.util.Map;
 public class AuthController {
 
     private final AuthenticationManager authenticationManager;
-    private final UserService userDetailsService;
     private final JwtUtil jwtUtil;
     private final AuthService authService;
     private final ValidationService validationService;
 
     public AuthController(AuthenticationManager authenticationManager,
-                          UserService userDetailsService, AuthService authService,
+                          AuthService authService,
                           JwtUtil jwtUtil, ValidationService validationService) {
         this.authenticationManager = authenticationManager;
-        this.userDetailsService = userDetailsService;
         this.authService = authService;
         this.jwtUtil = jwtUtil;
         this.validationService = validationService;
@@ -74,12 +74,13 @@ public class AuthController {
         }
 
         try {
-            authenticationManager.authenticate(
+            // The provider has already loaded the user to check the password; its principal is reused for the token
+            Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(loginDTO.getIdentifier(), loginDTO.getPassword())
             );
 
-            final UserDetails userDetails = userDetailsService.loadUserByUsername(loginDTO.getIdentifier());
-            String token = jwtUtil.generateToken(userDetails.getUsername());
+            final AuthenticateUser userDetails = (AuthenticateUser) authentication.getPrincipal();
+            String token = jwtUtil.generateToken(userDetails.getUserId(), userDetails.getUsername(), userDetails.getVersion());
 
             // // After login, trigger the WebSocket connection for notifications
             // WebSocketSession session = getWebSocketSession(userDetails.getUsername());
@@ -101,6 +102,9 @@ public class AuthController {
         } catch (AuthenticationException e) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "Authentication failed"));
+        } catch (PasswordHashingBusyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Server is busy, please try again shortly"));
         }
     }
 }
@@ -39,9 +39,11 @@ public class CartController {
     }
 
     @GetMapping("/get-cart-items")
-    public ResponseEntity<List<GetCartItemsDTO>> getCartItems(@AuthenticationPrincipal AuthenticateUser authenticateUser) {
+    public ResponseEntity<List<GetCartItemsDTO>> getCartItems(@RequestParam(value = "page", required = false) Integer page,
+                                                              @RequestParam(value = "size", required = false) Integer size,
+                                                              @AuthenticationPrincipal AuthenticateUser authenticateUser) {
         UUID userId = authenticateUser.getUserId();
-        return ResponseEntity.ok(cartService.getCartItems(userId));
+        return ResponseEntity.ok(cartService.getCartItems(userId, page, size)); // size counts sellers; all of them when absent
     }
 
 }
@@ -106,11 +106,25 @@ public class ListingController {
         return ResponseEntity.ok(listingService.getListings(getListingFilterDTO, userId));
     }
 
+    @PostMapping("/get-listing-facets")
+    public ResponseEntity<GetListingFacetsDTO> getListingFacets(@RequestBody GetListingFilterDTO getListingFilterDTO,
+                                                                @AuthenticationPrincipal AuthenticateUser authenticateUser) {
+        UUID userId = authenticateUser.getUserId();
+
+        return ResponseEntity.ok(listingService.getListingFacets(getListingFilterDTO, userId));
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<List<GetListingSuggestionDTO>> suggestListingTitles(@RequestParam("prefix") String prefix,
+                                                                              @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return ResponseEntity.ok(listingService.suggestListingTitles(prefix, limit));
+    }
+
     @GetMapping("/get-listing-details/{id}")
     public ResponseEntity<GetListingDetailsDTO> getListingDetails(@PathVariable("id") UUID listingId, @AuthenticationPrincipal AuthenticateUser authenticateUser) {
         UUID userId = authenticateUser.getUserId();
 
-        return ResponseEntity.ok(listingService.getListingDetails(listingId));
+        return ResponseEntity.ok(listingService.getListingDetails(listingId, userId));
     }
 
 //    @GetMapping("/get-listing/")
@@ -5,6 +5,7 @@ import com.nusiss.enums.CardCondition;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -32,6 +33,10 @@ public class GetListingDetailsDTO {
 
     private LocalDateTime listedOn;
 
+    private UUID sellerId;
+
+    private boolean isInCart;
+
     public GetListingDetailsDTO(Listing listing) {
         this.id = listing.getId();
         this.username = listing.getSeller().getUsername();
@@ -41,9 +46,10 @@ public class GetListingDetailsDTO {
         this.rarity = listing.getRarity().getRarityDisplayName();
         this.listingStatus = listing.getListingStatus().getListingStatusDisplayName();
         this.price = listing.getPrice();
-        this.images = listing.getImages();
+        this.images = new ArrayList<>(listing.getImages()); // Copied while the session is open; the DTO is serialized after it closes
         this.description = listing.getDescription();
         this.listedOn = listing.getCreatedOn();
+        this.sellerId = listing.getSeller().getId();
     }
 
     // Getters
@@ -61,6 +67,8 @@ public class GetListingDetailsDTO {
 
     public List<String> getImages() { return images; }
 
+    public void setImages(List<String> images) { this.images = images; }
+
     public String getListingStatus() {return listingStatus; }
 
     public String getDescription() { return description; }
@@ -68,4 +76,10 @@ public class GetListingDetailsDTO {
     public LocalDateTime getListedOn() { return listedOn; }
 
     public String getUsername() { return username; }
+
+    public UUID getSellerId() { return sellerId; }
+
+    public boolean getInCart() { return isInCart; }
+
+    public void setInCart(boolean isInCart) { this.isInCart = isInCart; }
 }
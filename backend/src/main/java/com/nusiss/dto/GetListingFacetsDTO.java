@@ -0,0 +1,68 @@
+package com.nusiss.dto;
+
+import java.util.List;
+import java.util.Map;
+
+public class GetListingFacetsDTO {
+
+    // Display name -> number of listings; each facet ignores its own filter but applies all the others
+    private Map<String, Long> rarities;
+
+    private Map<String, Long> conditions;
+
+    private Map<String, Long> cardTypes;
+
+    private Map<String, Long> listingStatuses;
+
+    private Map<String, Long> regions;
+
+    private List<GetPriceBucketDTO> priceHistogram;
+
+    public Map<String, Long> getRarities() {
+        return rarities;
+    }
+
+    public void setRarities(Map<String, Long> rarities) {
+        this.rarities = rarities;
+    }
+
+    public Map<String, Long> getConditions() {
+        return conditions;
+    }
+
+    public void setConditions(Map<String, Long> conditions) {
+        this.conditions = conditions;
+    }
+
+    public Map<String, Long> getCardTypes() {
+        return cardTypes;
+    }
+
+    public void setCardTypes(Map<String, Long> cardTypes) {
+        this.cardTypes = cardTypes;
+    }
+
+    public Map<String, Long> getListingStatuses() {
+        return listingStatuses;
+    }
+
+    public void setListingStatuses(Map<String, Long> listingStatuses) {
+        this.listingStatuses = listingStatuses;
+    }
+
+    public Map<String, Long> getRegions() {
+        return regions;
+    }
+
+    public void setRegions(Map<String, Long> regions) {
+        this.regions = regions;
+    }
+
+    public List<GetPriceBucketDTO> getPriceHistogram() {
+        return priceHistogram;
+    }
+
+    public void setPriceHistogram(List<GetPriceBucketDTO> priceHistogram) {
+        this.priceHistogram = priceHistogram;
+    }
+}
@@ -21,6 +21,9 @@ public class GetListingFilterDTO {
 
     private String title;
 
+    // Free text matched word by word against listing titles and descriptions; enables sortBy=relevance
+    private String searchText;
+
     private BigDecimal minPrice;
 
     private BigDecimal maxPrice;
@@ -33,8 +36,47 @@ public class GetListingFilterDTO {
 
     private String size = "100";
 
+    // Continuation token for keyset paging; null keeps page/size, "" requests the first keyset page
+    private String cursor;
+
+    // "exact" runs a COUNT per request, "approximate" serves a cached total, "none" only reports hasNext
+    private String totalMode = "exact";
+
+    // Returns summaries built from a column projection: no description or image list, only the main image
+    private boolean summaryOnly;
+
     private boolean excludeCurrentUser;
 
+    // Lets listingTitle match with typos ("Charzard") when the fuzzy index is enabled
+    private boolean fuzzy;
+
+    public GetListingFilterDTO() {
+    }
+
+    // Copy used to drop a single facet's filter while keeping the rest
+    public GetListingFilterDTO(GetListingFilterDTO other) {
+        this.username = other.username;
+        this.listingTitle = other.listingTitle;
+        this.conditions = other.conditions;
+        this.listingStatuses = other.listingStatuses;
+        this.rarities = other.rarities;
+        this.regions = other.regions;
+        this.cardTypes = other.cardTypes;
+        this.title = other.title;
+        this.searchText = other.searchText;
+        this.minPrice = other.minPrice;
+        this.maxPrice = other.maxPrice;
+        this.sortBy = other.sortBy;
+        this.sortOrder = other.sortOrder;
+        this.page = other.page;
+        this.size = other.size;
+        this.cursor = other.cursor;
+        this.totalMode = other.totalMode;
+        this.summaryOnly = other.summaryOnly;
+        this.excludeCurrentUser = other.excludeCurrentUser;
+        this.fuzzy = other.fuzzy;
+    }
+
     public String getUsername() {
         return username;
     }
@@ -63,6 +105,8 @@ public class GetListingFilterDTO {
         return title;
     }
 
+    public String getSearchText() { return searchText; }
+
     public BigDecimal getMinPrice() {
         return minPrice;
     }
@@ -87,7 +131,29 @@ public class GetListingFilterDTO {
         return size;
     }
 
+    public String getCursor() { return cursor; }
+
+    public String getTotalMode() { return totalMode; }
+
+    public boolean isSummaryOnly() { return summaryOnly; }
+
     public boolean isExcludeCurrentUser() {
         return excludeCurrentUser;
     }
+
+    public boolean isFuzzy() { return fuzzy; }
+
+    public void setConditions(List<String> conditions) { this.conditions = conditions; }
+
+    public void setListingStatuses(List<String> listingStatuses) { this.listingStatuses = listingStatuses; }
+
+    public void setRarities(List<String> rarities) { this.rarities = rarities; }
+
+    public void setRegions(List<String> regions) { this.regions = regions; }
+
+    public void setCardTypes(List<String> cardTypes) { this.cardTypes = cardTypes; }
+
+    public void setMinPrice(BigDecimal minPrice) { this.minPrice = minPrice; }
+
+    public void setMaxPrice(BigDecimal maxPrice) { this.maxPrice = maxPrice; }
 }
@@ -0,0 +1,22 @@
+package com.nusiss.dto;
+
+public class GetListingSuggestionDTO {
+
+    private String text;
+
+    // Number of active listings whose title contains the completed word
+    private int listingCount;
+
+    public GetListingSuggestionDTO(String text, int listingCount) {
+        this.text = text;
+        this.listingCount = listingCount;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public int getListingCount() {
+        return listingCount;
+    }
+}
@@ -1,7 +1,8 @@
 package com.nusiss.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.nusiss.entity.Listing;
-import com.nusiss.enums.ListingStatus;
+import com.nusiss.enums.*;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -38,6 +39,8 @@ public class GetListingSummaryDTO {
 
     private boolean isInCart;
 
+    private UUID sellerId;
+
     public GetListingSummaryDTO(Listing listing, boolean isInCart) {
 
         if (listing.getImages() == null || listing.getImages().isEmpty()) {
@@ -51,13 +54,32 @@ public class GetListingSummaryDTO {
         this.cardType = listing.getCardType().getCardTypeDisplayName();
         this.listingStatus = listing.getListingStatus().getListingStatusDisplayName();
         this.price = listing.getPrice();
-        this.mainImage = listing.getImages().isEmpty() ? null : listing.getImages().get(0);
+        this.mainImage = listing.getMainThumbnail() != null ? listing.getMainThumbnail() : listing.getImages().get(0);
         this.images = listing.getImages().isEmpty() ? null : listing.getImages();
         this.listedOn = listing.getCreatedOn();
         this.description = listing.getDescription();
         this.username = listing.getSeller().getUsername();
         this.region = listing.getSeller().getRegion().getRegionDisplayName();
         this.isInCart = isInCart;
+        this.sellerId = listing.getSeller().getId();
+    }
+
+    // Used by the projection query, which selects only summary columns (no description or image list)
+    public GetListingSummaryDTO(UUID id, String listingTitle, CardCondition cardCondition, CardType cardType,
+                                Rarity rarity, ListingStatus listingStatus, BigDecimal price, String mainImage,
+                                LocalDateTime listedOn, UUID sellerId, String username, Region region) {
+        this.id = id;
+        this.listingTitle = listingTitle;
+        this.cardCondition = cardCondition.getCardConditionDisplayName();
+        this.cardType = cardType.getCardTypeDisplayName();
+        this.rarity = rarity.getRarityDisplayName();
+        this.listingStatus = listingStatus.getListingStatusDisplayName();
+        this.price = price;
+        this.mainImage = mainImage;
+        this.listedOn = listedOn;
+        this.sellerId = sellerId;
+        this.username = username;
+        this.region = region.getRegionDisplayName();
     }
 
 
@@ -89,6 +111,8 @@ public class GetListingSummaryDTO {
         return mainImage;
     }
 
+    public void setMainImage(String mainImage) { this.mainImage = mainImage; }
+
     public List<String> getImages() { return images; }
 
     public String getListingStatus() {return listingStatus; }
@@ -100,4 +124,9 @@ public class GetListingSummaryDTO {
     public LocalDateTime getListedOn() { return listedOn; }
 
     public boolean getInCart() { return isInCart; }
+
+    public void setInCart(boolean isInCart) { this.isInCart = isInCart; }
+
+    @JsonIgnore
+    public UUID getSellerId() { return sellerId; }
 }
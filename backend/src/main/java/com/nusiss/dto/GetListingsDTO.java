@@ -9,6 +9,8 @@ public class GetListingsDTO {
     private int totalPages;
     private int currentPage;
     private int pageSize;
+    private boolean hasNext;
+    private String nextCursor;
 
     // Getters and setters
     public List<GetListingSummaryDTO> getListings() {
@@ -50,5 +52,20 @@ public class GetListingsDTO {
     public void setPageSize(int pageSize) {
         this.pageSize = pageSize;
     }
-}
 
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    public void setHasNext(boolean hasNext) {
+        this.hasNext = hasNext;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
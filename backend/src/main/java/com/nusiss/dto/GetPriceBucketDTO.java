@@ -0,0 +1,31 @@
+package com.nusiss.dto;
+
+import java.math.BigDecimal;
+
+public class GetPriceBucketDTO {
+
+    // Inclusive lower bound; the upper bound is exclusive except for the last bucket
+    private BigDecimal minPrice;
+
+    private BigDecimal maxPrice;
+
+    private long count;
+
+    public GetPriceBucketDTO(BigDecimal minPrice, BigDecimal maxPrice, long count) {
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.count = count;
+    }
+
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
@@ -11,6 +11,9 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
+@Table(uniqueConstraints = {
+        @UniqueConstraint(name = "uk_cart_user", columnNames = "user_id") // One cart per user, even when two first adds race
+})
 public class Cart {
 
     @Id
@@ -7,6 +7,10 @@ import org.hibernate.type.SqlTypes;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(uniqueConstraints = {
+        // A listing is in a cart at most once; also the index behind the membership and duplicate checks
+        @UniqueConstraint(name = "uk_cart_item_cart_listing", columnNames = {"cart_id", "listing_id"})
+})
 public class CartItem {
 
     @Id
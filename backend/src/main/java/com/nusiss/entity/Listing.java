@@ -5,6 +5,7 @@ import com.nusiss.enums.CardCondition;
 import com.nusiss.enums.ListingStatus;
 import com.nusiss.enums.Rarity;
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
@@ -12,9 +13,30 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 
 @Entity
+@Table(indexes = {
+        // Seller lookups (username filter, own-listing pages)
+        @Index(name = "idx_listing_user_id", columnList = "user_id, created_on"),
+        // Status is on almost every browse query, paired with each sort the search can ask for
+        @Index(name = "idx_listing_status_created_on", columnList = "listing_status, created_on, id"),
+        @Index(name = "idx_listing_status_price", columnList = "listing_status, price, id"),
+        @Index(name = "idx_listing_status_rarity", columnList = "listing_status, rarity_priority, id"),
+        @Index(name = "idx_listing_status_condition", columnList = "listing_status, condition_priority, id"),
+        // Sort-only indexes so unfiltered or LIKE-only searches can walk the index instead of sorting the table
+        @Index(name = "idx_listing_created_on", columnList = "created_on, id"),
+        @Index(name = "idx_listing_price", columnList = "price, id"),
+        @Index(name = "idx_listing_rarity_priority", columnList = "rarity_priority, id"),
+        @Index(name = "idx_listing_condition_priority", columnList = "condition_priority, id"),
+        // Enum filters used without a status
+        @Index(name = "idx_listing_rarity", columnList = "rarity, listing_status"),
+        @Index(name = "idx_listing_card_condition", columnList = "card_condition, listing_status"),
+        @Index(name = "idx_listing_card_type", columnList = "card_type, listing_status"),
+        // Listings to point at a thumbnail once it has been generated
+        @Index(name = "idx_listing_main_image", columnList = "main_image")
+})
 public class Listing {
 
     @Id
@@ -39,8 +61,13 @@ public class Listing {
     private BigDecimal price;
 
     @ElementCollection
+    @BatchSize(size = 100) // Load images for a whole search page in one query instead of one per listing
     private List<String> images = new ArrayList<>();
 
+    private String mainImage; // First image, kept in sync by setImages so summary queries can skip the image table
+
+    private String mainThumbnail; // Thumbnail of mainImage once ImageDerivatives has made one; summaries show it instead
+
     private String description;
 
     @ManyToOne
@@ -89,7 +116,18 @@ public class Listing {
 
     public List<String> getImages() { return images; }
 
-    public void setImages(List<String> images) { this.images = images; }
+    public void setImages(List<String> images) {
+        this.images = images;
+        String previousMainImage = this.mainImage;
+        this.mainImage = images == null || images.isEmpty() ? null : images.get(0);
+        if (!Objects.equals(previousMainImage, this.mainImage)) {
+            this.mainThumbnail = null;
+        }
+    }
+
+    public String getMainImage() { return mainImage; }
+
+    public String getMainThumbnail() { return mainThumbnail; }
 
     public String getDescription() { return description; }
 
@@ -100,4 +138,8 @@ public class Listing {
     public void setSeller(User seller) { this.seller = seller; }
 
     public LocalDateTime getCreatedOn() { return createdOn; }
+
+    public int getConditionPriority() { return conditionPriority; }
+
+    public int getRarityPriority() { return rarityPriority; }
 }
@@ -0,0 +1,85 @@
+package com.nusiss.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// One object in the image bucket, found by the SHA-256 of its bytes. referenceCount is the number of places in
+// listing image lists that hold its URL; the object is removed from the bucket once that drops to zero.
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_stored_image_url", columnList = "url", unique = true),
+        @Index(name = "idx_stored_image_reference_count", columnList = "reference_count")
+})
+public class StoredImage {
+
+    @Id
+    @Column(length = 64)
+    private String sha256;
+
+    @Column(nullable = false)
+    private String objectKey;
+
+    @Column(nullable = false)
+    private String url;
+
+    private int referenceCount;
+
+    private boolean stored; // Set once the object is in the bucket; until then, requests sharing it upload it as well
+
+    // Set by ImageDerivatives once both have been generated and stored; null until then
+    private String thumbnailUrl;
+
+    private String displayUrl;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdOn;
+
+    public StoredImage() {}
+
+    public StoredImage(String sha256, String objectKey, String url) {
+        this.sha256 = sha256;
+        this.objectKey = objectKey;
+        this.url = url;
+        this.referenceCount = 1;
+    }
+
+    @PrePersist
+    public void prePersist() {
+        if (createdOn == null) {
+            createdOn = LocalDateTime.now();
+        }
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public String getObjectKey() {
+        return objectKey;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getReferenceCount() {
+        return referenceCount;
+    }
+
+    public boolean isStored() {
+        return stored;
+    }
+
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+
+    public String getDisplayUrl() {
+        return displayUrl;
+    }
+
+    public LocalDateTime getCreatedOn() {
+        return createdOn;
+    }
+}
@@ -1,8 +1,8 @@
 package com.nusiss.entity;
 
 import com.nusiss.enums.Region;
-import com.nusiss.util.PasswordUtil;
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
@@ -10,7 +10,12 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name="\"user\"")
+@Table(name="\"user\"", indexes = {
+        @Index(name = "idx_user_username", columnList = "username"),
+        @Index(name = "idx_user_email", columnList = "email"),
+        @Index(name = "idx_user_region", columnList = "region")
+})
+@BatchSize(size = 100) // Sellers of a listing page are resolved together rather than one SELECT each
 public class User {
     @Id
     @JdbcTypeCode(SqlTypes.CHAR)
@@ -26,8 +31,12 @@ public class User {
     @Enumerated(EnumType.STRING)
     private Region region;
 
-    @Version
-    private int version;
+    // Raised when the password or username changes; tokens carrying a lower value are refused. A plain column rather
+    // than a JPA @Version, so other writes to the user are not optimistically locked.
+    @Column(nullable = false)
+    private int credentialVersion;
+
+    private LocalDateTime credentialsChangedOn;
 
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdOn;
@@ -49,10 +58,21 @@ public class User {
         return this.username;
     }
 
-    public void setPassword(String password) { this.password = PasswordUtil.hashPassword((password)); }
+    // Only ever a hash, computed off the request thread by PasswordHasher
+    public void setPasswordHash(String passwordHash) { this.password = passwordHash; }
 
     public String getPassword() { return this.password; }
 
+    public int getCredentialVersion() { return this.credentialVersion; }
+
+    public LocalDateTime getCredentialsChangedOn() { return this.credentialsChangedOn; }
+
+    // Call before saving a new password or username
+    public void credentialsChanged() {
+        this.credentialVersion++;
+        this.credentialsChangedOn = LocalDateTime.now();
+    }
+
     public void setName(String name) {
         this.name = name;
     }
@@ -0,0 +1,8 @@
+package com.nusiss.exception;
+
+// The password hashing pool is full or did not answer in time; callers turn this into a 503
+public class PasswordHashingBusyException extends RuntimeException {
+    public PasswordHashingBusyException(String message) {
+        super(message);
+    }
+}
@@ -4,4 +4,8 @@ import com.nusiss.entity.Listing;
 
 public interface ListingObserver {
     void onListingSold(Listing listing);
+
+    // Called after a listing is created or changed, for observers that keep their own copy of listing data
+    default void onListingSaved(Listing listing) {
+    }
 }
@@ -23,4 +23,10 @@ public class ListingSubject {
             observer.onListingSold(listing);
         }
     }
+
+    public void notifyListingSaved(Listing listing) {
+        for (ListingObserver observer : observers) {
+            observer.onListingSaved(listing);
+        }
+    }
 }
@@ -0,0 +1,23 @@
+package com.nusiss.patterns.strategy;
+
+import com.nusiss.dto.GetListingFilterDTO;
+import com.nusiss.entity.Listing;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.UUID;
+
+public class FuzzyTitleSearchStrategy implements SearchStrategy {
+
+    // Ids whose titles ListingFuzzyIndex matched within the allowed edit distance
+    private final Collection<UUID> matchingIds;
+
+    public FuzzyTitleSearchStrategy(Collection<UUID> matchingIds) {
+        this.matchingIds = matchingIds;
+    }
+
+    @Override
+    public Specification<Listing> searchSpecifications(GetListingFilterDTO getListingFilterDTO) {
+        return (root, query, builder) -> matchingIds.isEmpty() ? builder.disjunction() : root.get("id").in(matchingIds);
+    }
+}
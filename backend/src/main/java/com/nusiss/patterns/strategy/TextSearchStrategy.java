@@ -0,0 +1,47 @@
+package com.nusiss.patterns.strategy;
+
+import com.nusiss.dto.GetListingFilterDTO;
+import com.nusiss.entity.Listing;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public class TextSearchStrategy implements SearchStrategy {
+
+    // Ids matched by the full-text index, or null when the index is not available
+    private final Collection<UUID> matchingIds;
+
+    public TextSearchStrategy(Collection<UUID> matchingIds) {
+        this.matchingIds = matchingIds;
+    }
+
+    @Override
+    public Specification<Listing> searchSpecifications(GetListingFilterDTO getListingFilterDTO) {
+        if (matchingIds != null) {
+            return (root, query, builder) -> matchingIds.isEmpty() ? builder.disjunction() : root.get("id").in(matchingIds);
+        }
+
+        // Without the index every word has to appear in the title or the description
+        List<String> words = new ArrayList<>();
+        for (String word : getListingFilterDTO.getSearchText().toLowerCase().split("\\W+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+
+        return (root, query, builder) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            for (String word : words) {
+                String pattern = "%" + word + "%";
+                predicates.add(builder.or(
+                        builder.like(builder.lower(root.get("listingTitle")), pattern),
+                        builder.like(builder.lower(root.get("description")), pattern)));
+            }
+            return builder.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+}
@@ -1,14 +1,52 @@
 package com.nusiss.repository;
 
 import com.nusiss.entity.CartItem;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Repository
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     List<CartItem> findByListing_Id(UUID id);
+
+    boolean existsByCart_IdAndListing_Id(UUID cartId, UUID listingId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from CartItem ci where ci.cart.id = :cartId and ci.listing.id = :listingId")
+    int deleteByCartIdAndListingId(@Param("cartId") UUID cartId, @Param("listingId") UUID listingId);
+
+    // Membership of one page of listings, answered from cart_item without loading the cart or its listings
+    @Query("select ci.listing.id from CartItem ci where ci.cart.user.id = :userId and ci.listing.id in :listingIds")
+    Set<UUID> findListingIdsInCart(@Param("userId") UUID userId, @Param("listingIds") Collection<UUID> listingIds);
+
+    @Query("select ci.listing.id from CartItem ci where ci.cart.user.id = :userId")
+    List<UUID> findListingIdsByUserId(@Param("userId") UUID userId);
+
+    // Wishlist rows ordered seller by seller: seller id, seller username, listing id, listing title, main image
+    // (its thumbnail once there is one), price, card condition, rarity and listing status
+    @Query("select s.id, s.username, l.id, l.listingTitle, coalesce(l.mainThumbnail, l.mainImage), l.price, l.cardCondition, l.rarity, l.listingStatus " +
+            "from CartItem ci join ci.listing l join l.seller s " +
+            "where ci.cart.user.id = :userId order by s.username, s.id, ci.id")
+    List<Object[]> findCartRows(@Param("userId") UUID userId);
+
+    @Query("select s.id, s.username, l.id, l.listingTitle, coalesce(l.mainThumbnail, l.mainImage), l.price, l.cardCondition, l.rarity, l.listingStatus " +
+            "from CartItem ci join ci.listing l join l.seller s " +
+            "where ci.cart.user.id = :userId and s.id in :sellerIds order by s.username, s.id, ci.id")
+    List<Object[]> findCartRowsForSellers(@Param("userId") UUID userId, @Param("sellerIds") Collection<UUID> sellerIds);
+
+    // One page of the sellers in the user's wishlist, in the same order as findCartRows
+    @Query("select s.id from CartItem ci join ci.listing l join l.seller s " +
+            "where ci.cart.user.id = :userId group by s.id, s.username order by s.username, s.id")
+    List<UUID> findCartSellerIds(@Param("userId") UUID userId, Pageable pageable);
 }
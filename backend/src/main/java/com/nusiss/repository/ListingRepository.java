@@ -1,14 +1,38 @@
 package com.nusiss.repository;
 
 import com.nusiss.entity.Listing;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.UUID;
 
 @Repository
-public interface ListingRepository extends JpaRepository<Listing, UUID>, JpaSpecificationExecutor<Listing> {
+public interface ListingRepository extends JpaRepository<Listing, UUID>, JpaSpecificationExecutor<Listing>, ListingRepositoryCustom {
     List<Listing> findAllBySeller_Id(UUID sellerId);
+
+    @Override
+    @EntityGraph(attributePaths = {"seller"})
+    Page<Listing> findAll(Specification<Listing> spec, Pageable pageable);
+
+    // Columns needed by ListingTextIndex
+    @Query("select l.id, l.listingTitle, l.description from Listing l")
+    List<Object[]> findTextIndexRows();
+
+    // Once a thumbnail of an image exists, every listing showing that image first uses it in summaries
+    @Modifying
+    @Query("update Listing l set l.mainThumbnail = :thumbnailUrl where l.mainImage = :imageUrl")
+    int setMainThumbnail(@Param("imageUrl") String imageUrl, @Param("thumbnailUrl") String thumbnailUrl);
+
+    // Titles of active listings, for ListingSuggestIndex
+    @Query("select l.id, l.listingTitle from Listing l where l.listingStatus = com.nusiss.enums.ListingStatus.ACTIVE")
+    List<Object[]> findActiveTitles();
 }
@@ -0,0 +1,27 @@
+package com.nusiss.repository;
+
+import com.nusiss.dto.GetListingSummaryDTO;
+import com.nusiss.entity.Listing;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface ListingRepositoryCustom {
+    Slice<Listing> findSlice(Specification<Listing> spec, Pageable pageable);
+
+    Slice<GetListingSummaryDTO> findSummarySlice(Specification<Listing> spec, Pageable pageable);
+
+    List<UUID> findIds(Specification<Listing> spec);
+
+    <T> Map<T, Long> countGroupedBy(Specification<Listing> spec, String attributePath);
+
+    Optional<BigDecimal[]> findPriceRange(Specification<Listing> spec);
+
+    Map<Integer, Long> countByPriceBucket(Specification<Listing> spec, BigDecimal minPrice, BigDecimal bucketWidth);
+}
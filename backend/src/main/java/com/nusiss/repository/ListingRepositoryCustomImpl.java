@@ -0,0 +1,180 @@
+package com.nusiss.repository;
+
+import com.nusiss.dto.GetListingSummaryDTO;
+import com.nusiss.entity.Listing;
+import com.nusiss.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+public class ListingRepositoryCustomImpl implements ListingRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Same as findAll(spec, pageable) but fetches one extra row to work out hasNext instead of issuing a COUNT(*)
+    @Override
+    public Slice<Listing> findSlice(Specification<Listing> spec, Pageable pageable) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Listing> query = builder.createQuery(Listing.class);
+        Root<Listing> root = query.from(Listing.class);
+        root.fetch("seller");
+
+        Predicate predicate = spec.toPredicate(root, query, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(root).orderBy(QueryUtils.toOrders(pageable.getSort(), root, builder));
+
+        TypedQuery<Listing> typedQuery = entityManager.createQuery(query);
+        typedQuery.setFirstResult((int) pageable.getOffset());
+        typedQuery.setMaxResults(pageable.getPageSize() + 1);
+
+        List<Listing> listings = typedQuery.getResultList();
+
+        return toSlice(listings, pageable);
+    }
+
+    // Selects only the summary columns straight into DTOs, so no Listing entities enter the persistence context
+    @Override
+    public Slice<GetListingSummaryDTO> findSummarySlice(Specification<Listing> spec, Pageable pageable) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<GetListingSummaryDTO> query = builder.createQuery(GetListingSummaryDTO.class);
+        Root<Listing> root = query.from(Listing.class);
+        Join<Listing, User> seller = root.join("seller");
+
+        Predicate predicate = spec.toPredicate(root, query, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(builder.construct(GetListingSummaryDTO.class,
+                        root.get("id"),
+                        root.get("listingTitle"),
+                        root.get("cardCondition"),
+                        root.get("cardType"),
+                        root.get("rarity"),
+                        root.get("listingStatus"),
+                        root.get("price"),
+                        builder.coalesce(root.<String>get("mainThumbnail"), root.<String>get("mainImage")),
+                        root.get("createdOn"),
+                        seller.get("id"),
+                        seller.get("username"),
+                        seller.get("region")))
+                .orderBy(QueryUtils.toOrders(pageable.getSort(), root, builder));
+
+        TypedQuery<GetListingSummaryDTO> typedQuery = entityManager.createQuery(query);
+        typedQuery.setFirstResult((int) pageable.getOffset());
+        typedQuery.setMaxResults(pageable.getPageSize() + 1);
+
+        return toSlice(typedQuery.getResultList(), pageable);
+    }
+
+    // Ids only, for callers that order the matches themselves (e.g. by text relevance)
+    @Override
+    public List<UUID> findIds(Specification<Listing> spec) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<UUID> query = builder.createQuery(UUID.class);
+        Root<Listing> root = query.from(Listing.class);
+
+        Predicate predicate = spec.toPredicate(root, query, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(root.get("id"));
+
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    // One GROUP BY query for a whole facet, e.g. "rarity" or "seller.region"
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Map<T, Long> countGroupedBy(Specification<Listing> spec, String attributePath) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<Listing> root = query.from(Listing.class);
+
+        Path<Object> attribute = attributePath.startsWith("seller.")
+                ? root.join("seller").get(attributePath.substring("seller.".length()))
+                : root.get(attributePath);
+
+        Predicate predicate = spec.toPredicate(root, query, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.multiselect(attribute, builder.count(root)).groupBy(attribute);
+
+        Map<T, Long> counts = new HashMap<>();
+        for (Tuple row : entityManager.createQuery(query).getResultList()) {
+            counts.put((T) row.get(0), row.get(1, Long.class));
+        }
+        return counts;
+    }
+
+    @Override
+    public Optional<BigDecimal[]> findPriceRange(Specification<Listing> spec) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<Listing> root = query.from(Listing.class);
+
+        Predicate predicate = spec.toPredicate(root, query, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.multiselect(builder.min(root.get("price")), builder.max(root.get("price")));
+
+        Tuple range = entityManager.createQuery(query).getSingleResult();
+        if (range.get(0) == null) {
+            return Optional.empty(); // No listings match
+        }
+        return Optional.of(new BigDecimal[] { range.get(0, BigDecimal.class), range.get(1, BigDecimal.class) });
+    }
+
+    // Groups on floor((price - minPrice) / bucketWidth), so the histogram is a single query whatever the bucket count
+    @Override
+    public Map<Integer, Long> countByPriceBucket(Specification<Listing> spec, BigDecimal minPrice, BigDecimal bucketWidth) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<Listing> root = query.from(Listing.class);
+
+        Expression<BigDecimal> price = root.get("price");
+        Expression<Integer> bucket = builder.function("floor", Integer.class,
+                builder.quot(builder.diff(price, minPrice), bucketWidth));
+
+        Predicate predicate = spec.toPredicate(root, query, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.multiselect(bucket, builder.count(root)).groupBy(bucket);
+
+        Map<Integer, Long> counts = new HashMap<>();
+        for (Tuple row : entityManager.createQuery(query).getResultList()) {
+            counts.merge(((Number) row.get(0)).intValue(), row.get(1, Long.class), Long::sum);
+        }
+        return counts;
+    }
+
+    private <T> Slice<T> toSlice(List<T> rows, Pageable pageable) {
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? rows.subList(0, pageable.getPageSize()) : rows, pageable, hasNext);
+    }
+}
@@ -0,0 +1,52 @@
+package com.nusiss.repository;
+
+import com.nusiss.entity.StoredImage;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StoredImageRepository extends JpaRepository<StoredImage, String> {
+
+    // Counts are changed in place rather than read and written back, so concurrent listings cannot lose an update
+    @Modifying
+    @Query("update StoredImage i set i.referenceCount = i.referenceCount + 1 where i.sha256 = :sha256")
+    int addReference(@Param("sha256") String sha256);
+
+    @Modifying
+    @Query("update StoredImage i set i.referenceCount = i.referenceCount + 1 where i.url = :url")
+    int addReferenceByUrl(@Param("url") String url);
+
+    @Modifying
+    @Query("update StoredImage i set i.referenceCount = i.referenceCount - 1 where i.url = :url and i.referenceCount > 0")
+    int removeReferenceByUrl(@Param("url") String url);
+
+    @Modifying
+    @Query("update StoredImage i set i.stored = true where i.sha256 in :hashes")
+    int markStored(@Param("hashes") Collection<String> hashes);
+
+    Optional<StoredImage> findByUrl(String url);
+
+    List<StoredImage> findAllByUrlIn(Collection<String> urls);
+
+    // Only for the row the derivatives were rendered from: one collected and then stored again by a new upload has
+    // another createdOn, and its objects may have been deleted by the collection after they were rendered
+    @Modifying
+    @Query("update StoredImage i set i.thumbnailUrl = :thumbnailUrl, i.displayUrl = :displayUrl " +
+            "where i.sha256 = :sha256 and i.createdOn = :createdOn")
+    int setDerivatives(@Param("sha256") String sha256, @Param("createdOn") LocalDateTime createdOn,
+                       @Param("thumbnailUrl") String thumbnailUrl, @Param("displayUrl") String displayUrl);
+
+    // Locked, so a reference taken while the rows are being claimed for collection waits and then finds them gone
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<StoredImage> findAllByUrlInAndReferenceCount(Collection<String> urls, int referenceCount);
+}
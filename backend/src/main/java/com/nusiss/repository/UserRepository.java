@@ -2,8 +2,12 @@ package com.nusiss.repository;
 
 import com.nusiss.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -11,4 +15,8 @@ import java.util.UUID;
 public interface UserRepository extends JpaRepository<User, UUID> {
     Optional<User> findByUsernameIgnoreCase(String username);
     Optional<User> findByEmailIgnoreCase(String username);
+
+    // Id, credential version and change time of users whose credentials changed since the given time, for CredentialVersions
+    @Query("select u.id, u.credentialVersion, u.credentialsChangedOn from User u where u.credentialsChangedOn > :since")
+    List<Object[]> findCredentialChangesSince(@Param("since") LocalDateTime since);
 }
@@ -3,6 +3,7 @@ package com.nusiss.service;
 import com.nusiss.dto.CreateUserDTO;
 import com.nusiss.entity.User;
 import com.nusiss.enums.Region;
+import com.nusiss.exception.PasswordHashingBusyException;
 import com.nusiss.repository.UserRepository;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -13,11 +14,13 @@ public class AuthService {
 
     private final UserRepository userRepository;
 //    private final ValidationService validationService;
+    private final PasswordHasher passwordHasher;
 
-    public AuthService(UserRepository userRepository, ValidationService validationService) {
+    public AuthService(UserRepository userRepository, ValidationService validationService, PasswordHasher passwordHasher) {
 
         this.userRepository = userRepository;
 //        this.validationService = validationService;
+        this.passwordHasher = passwordHasher;
     }
 
     public ResponseEntity<?> createUser(CreateUserDTO createUserDTO) {
@@ -40,10 +43,17 @@ public class AuthService {
         //     return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errors);
         // }
 
+        String passwordHash;
+        try {
+            passwordHash = passwordHasher.encode(createUserDTO.getPassword());
+        } catch (PasswordHashingBusyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Server is busy, please try again shortly.");
+        }
+
 //          User user = User.fromDTO(userCreateDTO);
         User user = new User();
         user.setUsername(createUserDTO.getUsername());
-        user.setPassword(createUserDTO.getPassword());
+        user.setPasswordHash(passwordHash);
         user.setName(createUserDTO.getName());
         user.setEmail(createUserDTO.getEmail());
         user.setMobileNumber(createUserDTO.getMobileNumber());
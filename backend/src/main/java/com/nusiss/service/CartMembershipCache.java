@@ -0,0 +1,244 @@
+package com.nusiss.service;
+
+import com.nusiss.entity.Listing;
+import com.nusiss.patterns.observer.ListingObserver;
+import com.nusiss.patterns.observer.ListingSubject;
+import com.nusiss.util.TransactionUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+// Listing ids in each user's cart, for isInCart. Loaded on a user's first lookup, least recently used users are dropped
+// beyond cart.membership-cache.max-users, and CartService writes changes through once they commit.
+// Setting max-users to 0 turns the cache off.
+@Component
+public class CartMembershipCache implements ListingObserver {
+
+    // Bumped by every write to a user in the stripe, so a load that overlapped a write is not cached
+    private static final int STRIPES = 64;
+
+    private final int maxUsers;
+
+    private final Map<UUID, CompactIdSet> entries;
+    private final long[] generations = new long[STRIPES];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CartMembershipCache(@Value("${cart.membership-cache.max-users:10000}") int maxUsers,
+                               ListingSubject listingSubject) {
+        this.maxUsers = maxUsers;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, CompactIdSet> eldest) {
+                if (size() > CartMembershipCache.this.maxUsers) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        listingSubject.addObserver(this);
+    }
+
+    public boolean isEnabled() {
+        return maxUsers > 0;
+    }
+
+    // The given listings that are in the user's cart. The loader returns every listing id in the cart; it must run in a
+    // transaction that has not read anything yet, so its snapshot is not older than the write check done here.
+    public Set<UUID> retainInCart(UUID userId, Collection<UUID> listingIds, Supplier<Collection<UUID>> loader) {
+        CompactIdSet cartIds = getOrLoad(userId, loader);
+
+        Set<UUID> inCart = new HashSet<>();
+        for (UUID listingId : listingIds) {
+            if (cartIds.contains(listingId)) {
+                inCart.add(listingId);
+            }
+        }
+        return inCart;
+    }
+
+    // Answers only for users already cached, so a single check never pays for loading a whole cart
+    public synchronized Optional<Boolean> containsIfCached(UUID userId, UUID listingId) {
+        CompactIdSet cached = entries.get(userId);
+        if (cached == null) {
+            return Optional.empty();
+        }
+
+        hits.increment();
+        return Optional.of(cached.contains(listingId));
+    }
+
+    public void itemAdded(UUID userId, UUID listingId) {
+        TransactionUtil.runAfterCommit(() -> update(userId, ids -> ids.with(listingId)));
+    }
+
+    public void itemRemoved(UUID userId, UUID listingId) {
+        TransactionUtil.runAfterCommit(() -> update(userId, ids -> ids.without(listingId)));
+    }
+
+    // Sold and deleted listings stay in carts for now, but whatever happens to their cart rows,
+    // the users holding them reload on their next lookup
+    @Override
+    public void onListingSold(Listing listing) {
+        UUID listingId = listing.getId();
+        TransactionUtil.runAfterCommit(() -> evictHolders(listingId));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long idCount() {
+        return entries.values().stream().mapToLong(CompactIdSet::size).sum();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        Arrays.fill(generations, 0);
+    }
+
+    private CompactIdSet getOrLoad(UUID userId, Supplier<Collection<UUID>> loader) {
+        if (!isEnabled()) {
+            return CompactIdSet.of(loader.get());
+        }
+
+        long generation;
+        synchronized (this) {
+            CompactIdSet cached = entries.get(userId);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            generation = generations[stripe(userId)];
+        }
+
+        misses.increment();
+        CompactIdSet loaded = CompactIdSet.of(loader.get());
+
+        synchronized (this) {
+            if (generations[stripe(userId)] == generation) {
+                entries.put(userId, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    private synchronized void update(UUID userId, UnaryOperator<CompactIdSet> change) {
+        generations[stripe(userId)]++;
+        CompactIdSet cached = entries.get(userId);
+        if (cached != null) {
+            entries.put(userId, change.apply(cached));
+        }
+    }
+
+    private synchronized void evictHolders(UUID listingId) {
+        for (int i = 0; i < STRIPES; i++) {
+            generations[i]++;
+        }
+        entries.values().removeIf(ids -> ids.contains(listingId));
+    }
+
+    private static int stripe(UUID userId) {
+        return Math.floorMod(userId.hashCode(), STRIPES);
+    }
+
+    // Immutable sorted set of UUIDs held as two longs each: 16 bytes per id instead of a HashSet node and a UUID object
+    private static final class CompactIdSet {
+
+        private static final CompactIdSet EMPTY = new CompactIdSet(new long[0]);
+
+        private final long[] bits; // most and least significant halves, pairwise, sorted
+
+        private CompactIdSet(long[] bits) {
+            this.bits = bits;
+        }
+
+        private static CompactIdSet of(Collection<UUID> ids) {
+            if (ids.isEmpty()) {
+                return EMPTY;
+            }
+
+            long[] bits = new long[ids.size() * 2];
+            int i = 0;
+            for (UUID id : new TreeSet<>(ids)) {
+                bits[i++] = id.getMostSignificantBits();
+                bits[i++] = id.getLeastSignificantBits();
+            }
+            return new CompactIdSet(i == bits.length ? bits : Arrays.copyOf(bits, i)); // Duplicates collapse in the TreeSet
+        }
+
+        private int size() {
+            return bits.length / 2;
+        }
+
+        private boolean contains(UUID id) {
+            return indexOf(id) >= 0;
+        }
+
+        private CompactIdSet with(UUID id) {
+            int index = indexOf(id);
+            if (index >= 0) {
+                return this;
+            }
+
+            int insertAt = -(index + 1);
+            long[] grown = new long[bits.length + 2];
+            System.arraycopy(bits, 0, grown, 0, insertAt * 2);
+            grown[insertAt * 2] = id.getMostSignificantBits();
+            grown[insertAt * 2 + 1] = id.getLeastSignificantBits();
+            System.arraycopy(bits, insertAt * 2, grown, insertAt * 2 + 2, bits.length - insertAt * 2);
+            return new CompactIdSet(grown);
+        }
+
+        private CompactIdSet without(UUID id) {
+            int index = indexOf(id);
+            if (index < 0) {
+                return this;
+            }
+
+            long[] shrunk = new long[bits.length - 2];
+            System.arraycopy(bits, 0, shrunk, 0, index * 2);
+            System.arraycopy(bits, index * 2 + 2, shrunk, index * 2, bits.length - index * 2 - 2);
+            return new CompactIdSet(shrunk);
+        }
+
+        // Binary search in UUID order; like Arrays.binarySearch, returns -(insertion point) - 1 when absent
+        private int indexOf(UUID id) {
+            int low = 0;
+            int high = size() - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int compare = id.compareTo(new UUID(bits[mid * 2], bits[mid * 2 + 1]));
+                if (compare == 0) {
+                    return mid;
+                }
+                if (compare < 0) {
+                    high = mid - 1;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
@@ -6,58 +6,71 @@ import com.nusiss.entity.Cart;
 import com.nusiss.entity.CartItem;
 import com.nusiss.entity.Listing;
 import com.nusiss.entity.User;
+import com.nusiss.enums.CardCondition;
+import com.nusiss.enums.ListingStatus;
+import com.nusiss.enums.Rarity;
+import com.nusiss.repository.CartItemRepository;
 import com.nusiss.repository.CartRepository;
 import com.nusiss.repository.ListingRepository;
 import com.nusiss.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.transaction.Transactional;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Service
 public class CartService {
 
     private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
     private final ListingRepository listingRepository;
     private final UserRepository userRepository;
+    private final CartMembershipCache cartMembershipCache;
 
-    public CartService(CartRepository cartRepository, ListingRepository listingRepository, UserRepository userRepository) {
+    public CartService(CartRepository cartRepository, CartItemRepository cartItemRepository,
+                       ListingRepository listingRepository, UserRepository userRepository,
+                       CartMembershipCache cartMembershipCache) {
         this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
         this.listingRepository = listingRepository;
         this.userRepository = userRepository;
+        this.cartMembershipCache = cartMembershipCache;
     }
 
+    // Constant cost whatever the size of the cart: the cart row and one (cart_id, listing_id) key are touched, never the items.
+    // Concurrent duplicate adds are settled by the unique constraints rather than by locking.
     public ResponseEntity<String> addCartItem(UUID listingId, UUID userId) {
         Listing listing = listingRepository.findById(listingId).orElseThrow(() -> new EntityNotFoundException("Listing not found"));
-        User user = userRepository.findById(userId).orElseThrow(() -> new EntityNotFoundException("User not found"));
-
-        Cart cart = cartRepository.findByUser_Id(userId)
-                .orElseGet(() -> {
-                    Cart newCart = new Cart();
-                    newCart.setUser(user);
-                    return cartRepository.save(newCart);
-                });
+        Cart cart = findOrCreateCart(userId);
 
-        List<CartItem> cartItems = cart.getItems();
-
-        for(CartItem item : cartItems) {
-            if(item.getListing().getId().equals(listingId)) {
-                return ResponseEntity.status(HttpStatus.FOUND).body("Listing is already in cart");
-            }
+        if (isInCart(cart, userId, listingId)) {
+            return ResponseEntity.status(HttpStatus.FOUND).body("Listing is already in cart");
         }
 
         CartItem cartItem = new CartItem();
         cartItem.setListing(listing);
         cartItem.setCart(cart);
-        cartItems.add(cartItem);
 
-        cartRepository.save(cart);
+        try {
+            cartItemRepository.saveAndFlush(cartItem);
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity.status(HttpStatus.FOUND).body("Listing is already in cart"); // Added concurrently
+        }
+        cartMembershipCache.itemAdded(userId, listingId);
 
         return ResponseEntity.status(HttpStatus.CREATED).body("Successfully added to wishlist");
     }
@@ -68,70 +81,106 @@ public class CartService {
 
         Cart cart = cartRepository.findByUser_Id(userId).orElseThrow(() -> new EntityNotFoundException("Cart is not found"));
 
-        List<CartItem> cartItems = cart.getItems();
-        CartItem toRemove = null;
-
-        for(CartItem item : cartItems) {
-            if (item.getListing().getId().equals(listingId)) {
-                toRemove = item;
-                break;
-            }
+        if (!isInCart(cart, userId, listingId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Listing is not found in Cart item");
         }
-        if (toRemove != null) {
-            cartItems.remove(toRemove);
-            cartRepository.save(cart); // cascade should handle deletion of CartItem
+
+        // One row by its (cart_id, listing_id) key, rather than loading the cart's items to find it
+        if (cartItemRepository.deleteByCartIdAndListingId(cart.getId(), listingId) > 0) {
+            cartMembershipCache.itemRemoved(userId, listingId);
             return ResponseEntity.status(HttpStatus.OK).body("Listing has been removed from the cart.");
         }
 
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Listing is not found in Cart item");
     }
 
-    public List<GetCartItemsDTO> getCartItems(UUID userId) {
-        User user = userRepository.findById(userId).orElseThrow(() -> new EntityNotFoundException("User not found"));
-        Cart cart = cartRepository.findByUser_Id(userId).orElseThrow(() -> new EntityNotFoundException("Cart is not found"));
+    // One projection query, already ordered by seller, folded into one group per seller. With a page size only that page of
+    // sellers is returned, for one more query, however many cards are wishlisted. A user without a cart has an empty wishlist.
+    // Transactional so the image list of listings without a mainImage can still be loaded.
+    @Transactional
+    public List<GetCartItemsDTO> getCartItems(UUID userId, Integer sellerPage, Integer sellersPerPage) {
+        List<Object[]> rows;
+        if (sellersPerPage == null) {
+            rows = cartItemRepository.findCartRows(userId);
+        } else {
+            List<UUID> sellerIds = cartItemRepository.findCartSellerIds(userId,
+                    PageRequest.of(Optional.ofNullable(sellerPage).orElse(0), sellersPerPage));
+            rows = sellerIds.isEmpty() ? List.of() : cartItemRepository.findCartRowsForSellers(userId, sellerIds);
+        }
 
-        List<CartItem> cartItems = cart.getItems();
-
-        Map<User, List<CartItem>> cartItemsMapping = cartItems.stream()
-                .collect(Collectors.groupingBy(cartItem -> cartItem.getListing().getSeller()));
-
-        List<GetCartItemsDTO> cartItemsResult = cartItemsMapping.entrySet().stream().map( entry -> { User seller = entry.getKey();
-            List<GetCartItemSummaryDTO> cartItemSummary = entry.getValue().stream().map(cartItem -> {
-                Listing listing = cartItem.getListing();
-                GetCartItemSummaryDTO cartItemDTO = new GetCartItemSummaryDTO();
-                cartItemDTO.setId(listing.getId());
-                cartItemDTO.setListingTitle(listing.getListingTitle());
-                cartItemDTO.setMainImage(listing.getImages().isEmpty() ? null : listing.getImages().get(0));
-                cartItemDTO.setPrice(listing.getPrice());
-                cartItemDTO.setCardCondition(listing.getCardCondition().getCardConditionDisplayName());
-                cartItemDTO.setRarity(listing.getRarity().getRarityDisplayName());
-                cartItemDTO.setListingStatus(listing.getListingStatus().getListingStatusDisplayName());
-                return cartItemDTO;
-            }).collect(Collectors.toList());
-
-            GetCartItemsDTO cartItemsDTO = new GetCartItemsDTO();
-            cartItemsDTO.setItems(cartItemSummary);
-            cartItemsDTO.setSellerName(seller.getUsername());
-            return cartItemsDTO;
-        }).collect(Collectors.toList());
+        List<GetCartItemsDTO> cartItemsResult = new ArrayList<>();
+        Map<UUID, GetCartItemSummaryDTO> missingMainImages = new HashMap<>();
+        GetCartItemsDTO sellerGroup = null;
+        UUID sellerId = null;
+        for (Object[] row : rows) {
+            if (!row[0].equals(sellerId)) {
+                sellerId = (UUID) row[0];
+                sellerGroup = new GetCartItemsDTO();
+                sellerGroup.setSellerName((String) row[1]);
+                sellerGroup.setItems(new ArrayList<>());
+                cartItemsResult.add(sellerGroup);
+            }
+
+            GetCartItemSummaryDTO cartItemDTO = new GetCartItemSummaryDTO();
+            cartItemDTO.setId((UUID) row[2]);
+            cartItemDTO.setListingTitle((String) row[3]);
+            cartItemDTO.setMainImage((String) row[4]);
+            cartItemDTO.setPrice((BigDecimal) row[5]);
+            cartItemDTO.setCardCondition(((CardCondition) row[6]).getCardConditionDisplayName());
+            cartItemDTO.setRarity(((Rarity) row[7]).getRarityDisplayName());
+            cartItemDTO.setListingStatus(((ListingStatus) row[8]).getListingStatusDisplayName());
+            sellerGroup.getItems().add(cartItemDTO);
+
+            if (cartItemDTO.getMainImage() == null) {
+                missingMainImages.put(cartItemDTO.getId(), cartItemDTO);
+            }
+        }
+
+        // Listings saved before mainImage existed have no value in that column, so fall back to their image list
+        if (!missingMainImages.isEmpty()) {
+            for (Listing listing : listingRepository.findAllById(missingMainImages.keySet())) {
+                if (!listing.getImages().isEmpty()) {
+                    missingMainImages.get(listing.getId()).setMainImage(listing.getImages().get(0));
+                }
+            }
+        }
 
         return cartItemsResult;
     }
 
-    public Set<UUID> getCartListingIds(UUID userId) {
-        Cart cart = cartRepository.findByUser_Id(userId).orElseGet(() -> {
-            System.out.println("hereeeeee");
-            Cart newCart = new Cart();
-            User user = userRepository.findById(userId).orElseThrow(() -> new EntityNotFoundException("User not found"));
-            newCart.setUser(user);
-            return cartRepository.save(newCart);
-        });
+    // Which of the given listings the user has in their cart. Read-only: a user without a cart simply has none of them
+    public Set<UUID> getCartListingIds(UUID userId, Collection<UUID> listingIds) {
+        if (listingIds.isEmpty()) {
+            return Collections.emptySet();
+        }
 
-        List<CartItem> cartItems = cart.getItems();
+        if (!cartMembershipCache.isEnabled()) {
+            return cartItemRepository.findListingIdsInCart(userId, listingIds);
+        }
 
-        return cartItems.stream()
-                .map(cartItem -> cartItem.getListing().getId())  // Get the UUID from the Listing of each CartItem
-                .collect(Collectors.toSet());  // Collect them into a Set of UUIDs
+        return cartMembershipCache.retainInCart(userId, listingIds, () -> cartItemRepository.findListingIdsByUserId(userId));
+    }
+
+    // The cache answers for users it holds; anyone else costs one lookup on the unique (cart_id, listing_id) key
+    private boolean isInCart(Cart cart, UUID userId, UUID listingId) {
+        return cartMembershipCache.containsIfCached(userId, listingId)
+                .orElseGet(() -> cartItemRepository.existsByCart_IdAndListing_Id(cart.getId(), listingId));
+    }
+
+    // A racing first add that loses on the unique user_id constraint picks up the winner's cart
+    private Cart findOrCreateCart(UUID userId) {
+        Optional<Cart> existing = cartRepository.findByUser_Id(userId);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        Cart newCart = new Cart();
+        newCart.setUser(userRepository.findById(userId).orElseThrow(() -> new EntityNotFoundException("User not found")));
+        try {
+            return cartRepository.saveAndFlush(newCart);
+        } catch (DataIntegrityViolationException e) {
+            return cartRepository.findByUser_Id(userId).orElseThrow(() -> e);
+        }
     }
 
 }
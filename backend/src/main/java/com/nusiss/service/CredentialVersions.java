@@ -0,0 +1,78 @@
+package com.nusiss.service;
+
+import com.nusiss.entity.User;
+import com.nusiss.repository.UserRepository;
+import com.nusiss.util.JwtUtil;
+import com.nusiss.util.TransactionUtil;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Lowest User.credentialVersion a token may carry, for users whose password or username changed since tokens issued
+// before the change could still be alive. Tokens are checked against it in memory, so authenticating a request needs
+// no query. Entries are dropped once every token issued before the change has expired.
+// The change time is stored on the user, so a restart starts again from the changes of the last token lifetime.
+// Changes made through another running instance are only seen there until this one restarts.
+@Component
+public class CredentialVersions {
+
+    private final UserRepository userRepository;
+
+    private final Map<UUID, Revocation> revocations = new ConcurrentHashMap<>();
+
+    public CredentialVersions(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        LocalDateTime since = LocalDateTime.now().minusNanos(JwtUtil.EXPIRATION_TIME * 1_000_000);
+        for (Object[] row : userRepository.findCredentialChangesSince(since)) {
+            long changedAt = ((LocalDateTime) row[2]).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            revoke((UUID) row[0], new Revocation((Integer) row[1], changedAt + JwtUtil.EXPIRATION_TIME));
+        }
+    }
+
+    // Call after User.credentialsChanged() and saving the user; applies once the transaction commits
+    public void credentialsChanged(User user) {
+        UUID userId = user.getId();
+        int credentialVersion = user.getCredentialVersion();
+        TransactionUtil.runAfterCommit(() -> {
+            long now = System.currentTimeMillis();
+            revocations.values().removeIf(revocation -> revocation.expiresAt <= now);
+            revoke(userId, new Revocation(credentialVersion, now + JwtUtil.EXPIRATION_TIME));
+        });
+    }
+
+    public boolean isCurrent(UUID userId, int tokenVersion) {
+        Revocation revocation = revocations.get(userId);
+        return revocation == null
+                || revocation.expiresAt <= System.currentTimeMillis()
+                || tokenVersion >= revocation.minimumVersion;
+    }
+
+    public int size() {
+        return revocations.size();
+    }
+
+    private void revoke(UUID userId, Revocation revocation) {
+        revocations.merge(userId, revocation,
+                (previous, latest) -> latest.minimumVersion >= previous.minimumVersion ? latest : previous);
+    }
+
+    private static class Revocation {
+        private final int minimumVersion;
+        private final long expiresAt;
+
+        private Revocation(int minimumVersion, long expiresAt) {
+            this.minimumVersion = minimumVersion;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.nusiss.service;
+
+import com.nusiss.entity.StoredImage;
+import com.nusiss.repository.ListingRepository;
+import com.nusiss.repository.StoredImageRepository;
+import com.nusiss.util.TransactionUtil;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.imageio.*;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Smaller copies of stored images, made on imageDerivativeExecutor after a listing is saved: a thumbnail for summaries
+// and a recompressed display image for the details page, both JPEG through the JDK's own ImageIO codecs. They are keyed
+// by the original's object key, so listings sharing an image share its derivatives too.
+// Until they exist, or for formats ImageIO cannot read, listings keep showing the original.
+// ImageIO ignores the EXIF orientation phones write instead of rotating the pixels, so it is applied here.
+@Service
+public class ImageDerivatives {
+
+    private static final String THUMBNAIL_SUFFIX = "-thumb.jpg";
+    private static final String DISPLAY_SUFFIX = "-display.jpg";
+
+    private static final String JPEG_METADATA = "javax_imageio_jpeg_image_1.0";
+    private static final int APP1 = 0xE1;
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    private final StoredImageRepository storedImageRepository;
+    private final ListingRepository listingRepository;
+    private final S3Service s3Service;
+    private final ThreadPoolTaskExecutor imageDerivativeExecutor;
+    private final TransactionTemplate transaction;
+
+    private final int thumbnailSize;
+    private final int displaySize;
+    private final float thumbnailQuality;
+    private final float displayQuality;
+    private final long maxPixels;
+
+    private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+    private final Set<String> unreadable = ConcurrentHashMap.newKeySet(); // Not retried until the next restart
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public ImageDerivatives(StoredImageRepository storedImageRepository,
+                            ListingRepository listingRepository,
+                            S3Service s3Service,
+                            @Qualifier("imageDerivativeExecutor") ThreadPoolTaskExecutor imageDerivativeExecutor,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${image.derivatives.thumbnail-size:320}") int thumbnailSize,
+                            @Value("${image.derivatives.display-size:1280}") int displaySize,
+                            @Value("${image.derivatives.thumbnail-quality:0.75}") float thumbnailQuality,
+                            @Value("${image.derivatives.display-quality:0.85}") float displayQuality,
+                            @Value("${image.derivatives.max-pixels:40000000}") long maxPixels) {
+        this.storedImageRepository = storedImageRepository;
+        this.listingRepository = listingRepository;
+        this.s3Service = s3Service;
+        this.imageDerivativeExecutor = imageDerivativeExecutor;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.thumbnailSize = thumbnailSize;
+        this.displaySize = displaySize;
+        this.thumbnailQuality = thumbnailQuality;
+        this.displayQuality = displayQuality;
+        this.maxPixels = maxPixels;
+    }
+
+    // Keys of the derivatives of the image stored under this key, whether they have been made yet or not
+    public static List<String> keysOf(String objectKey) {
+        return List.of(objectKey + THUMBNAIL_SUFFIX, objectKey + DISPLAY_SUFFIX);
+    }
+
+    // For the images of a listing being saved. Images that already have derivatives are only linked to the listing.
+    public void generateAfterCommit(List<String> imageUrls) {
+        List<String> urls = List.copyOf(new LinkedHashSet<>(imageUrls));
+        TransactionUtil.runAfterCommit(() -> urls.forEach(this::schedule));
+    }
+
+    // The display image of each URL in place of the original, where there is one. Stored images still without one are
+    // scheduled again, which picks up work dropped by a full queue or lost in a restart.
+    public List<String> displayVersionsOf(List<String> imageUrls) {
+        Map<String, StoredImage> images = new HashMap<>();
+        for (StoredImage image : storedImageRepository.findAllByUrlIn(new HashSet<>(imageUrls))) {
+            images.put(image.getUrl(), image);
+            if (image.isStored() && image.getDisplayUrl() == null && !unreadable.contains(image.getSha256())) {
+                schedule(image.getUrl());
+            }
+        }
+
+        return imageUrls.stream()
+                .map(url -> Optional.ofNullable(images.get(url)).map(StoredImage::getDisplayUrl).orElse(url))
+                .toList();
+    }
+
+    public long generatedCount() {
+        return generated.sum();
+    }
+
+    public long failureCount() {
+        return failures.sum();
+    }
+
+    // A URL turned away by the full queue is unmarked again, or no later call could ever schedule it
+    private void schedule(String url) {
+        if (inProgress.add(url)) {
+            try {
+                imageDerivativeExecutor.execute(() -> {
+                    try {
+                        generate(url);
+                    } finally {
+                        inProgress.remove(url);
+                    }
+                });
+            } catch (TaskRejectedException e) {
+                inProgress.remove(url);
+            }
+        }
+    }
+
+    private void generate(String url) {
+        StoredImage image = storedImageRepository.findByUrl(url).orElse(null);
+        if (image == null || !image.isStored()) {
+            return; // Uploaded before the store existed, or already collected
+        }
+
+        String thumbnailUrl = image.getThumbnailUrl();
+        if (thumbnailUrl == null) {
+            try {
+                thumbnailUrl = render(image);
+            } catch (IOException e) {
+                unreadable.add(image.getSha256());
+                failures.increment();
+                System.out.println("Cannot make derivatives of " + url + ": " + e.getMessage());
+                return;
+            } catch (RuntimeException e) {
+                failures.increment();
+                System.out.println("Failed to generate derivatives of " + url + ": " + e.getMessage());
+                return;
+            }
+            if (thumbnailUrl == null) {
+                return;
+            }
+        }
+
+        String mainThumbnail = thumbnailUrl;
+        transaction.executeWithoutResult(status -> listingRepository.setMainThumbnail(url, mainThumbnail));
+    }
+
+    // Returns the thumbnail URL, or null when the image was collected while this ran
+    // Each size fits within a square, so orienting the scaled copy gives the same result as orienting the original
+    // first, without another full-size copy of it
+    private String render(StoredImage image) throws IOException {
+        DecodedImage original = decode(image.getObjectKey());
+        List<String> keys = keysOf(image.getObjectKey());
+
+        BufferedImage thumbnail = orient(scaleToFit(original.image, thumbnailSize), original.orientation);
+        BufferedImage display = orient(scaleToFit(original.image, displaySize), original.orientation);
+        String thumbnailUrl = s3Service.uploadBytes(keys.get(0), encodeJpeg(thumbnail, thumbnailQuality), "image/jpeg");
+        String displayUrl = s3Service.uploadBytes(keys.get(1), encodeJpeg(display, displayQuality), "image/jpeg");
+
+        Integer updated = transaction.execute(status ->
+                storedImageRepository.setDerivatives(image.getSha256(), image.getCreatedOn(), thumbnailUrl, displayUrl));
+        if (updated == null || updated == 0) {
+            keys.forEach(s3Service::deleteQuietly);
+            return null;
+        }
+        generated.increment();
+        return thumbnailUrl;
+    }
+
+    // The dimensions are read from the header first, so a small file claiming a huge image is refused before decoding
+    private DecodedImage decode(String key) throws IOException {
+        try (InputStream in = s3Service.download(key);
+             ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, false);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels) {
+                    throw new IOException("Image of " + reader.getWidth(0) + "x" + reader.getHeight(0) + " is too large");
+                }
+                BufferedImage image = reader.read(0);
+                return new DecodedImage(image, orientationOf(reader.getImageMetadata(0)));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Never scales up. Large reductions are done in halving steps, which keeps detail a single bilinear pass would alias.
+    // JPEG has no alpha channel, so transparent areas come out white.
+    private static BufferedImage scaleToFit(BufferedImage source, int maxSide) {
+        double scale = Math.min(1.0, (double) maxSide / Math.max(source.getWidth(), source.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        while (width / 2 >= targetWidth && height / 2 >= targetHeight) {
+            width /= 2;
+            height /= 2;
+            current = draw(current, width, height);
+        }
+        return draw(current, targetWidth, targetHeight);
+    }
+
+    // The EXIF orientation (1 to 8) from a JPEG's APP1 segment, or 1 (as stored) when there is none
+    private static int orientationOf(IIOMetadata metadata) {
+        if (metadata == null || !Arrays.asList(metadata.getMetadataFormatNames()).contains(JPEG_METADATA)) {
+            return 1;
+        }
+
+        NodeList markers = ((Element) metadata.getAsTree(JPEG_METADATA)).getElementsByTagName("unknown");
+        for (int i = 0; i < markers.getLength(); i++) {
+            IIOMetadataNode marker = (IIOMetadataNode) markers.item(i);
+            if (Integer.parseInt(marker.getAttribute("MarkerTag")) == APP1 && marker.getUserObject() instanceof byte[] data) {
+                int orientation = exifOrientation(data);
+                if (orientation != 0) {
+                    return orientation;
+                }
+            }
+        }
+        return 1;
+    }
+
+    // "Exif\0\0", then a TIFF header and its first IFD, whose entries are 12 bytes each: tag, type, count and value.
+    // Returns 0 when the segment is not EXIF or has no valid orientation.
+    private static int exifOrientation(byte[] data) {
+        if (data.length < 14 || data[0] != 'E' || data[1] != 'x' || data[2] != 'i' || data[3] != 'f') {
+            return 0;
+        }
+
+        ByteBuffer tiff = ByteBuffer.wrap(data, 6, data.length - 6).slice();
+        if (tiff.get(0) == 'I' && tiff.get(1) == 'I') {
+            tiff.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (tiff.get(0) != 'M' || tiff.get(1) != 'M') {
+            return 0;
+        }
+
+        try {
+            int ifd = tiff.getInt(4);
+            int entries = tiff.getShort(ifd) & 0xFFFF;
+            for (int i = 0; i < entries; i++) {
+                int entry = ifd + 2 + i * 12;
+                if ((tiff.getShort(entry) & 0xFFFF) == ORIENTATION_TAG) {
+                    int orientation = tiff.getShort(entry + 8) & 0xFFFF;
+                    return orientation >= 1 && orientation <= 8 ? orientation : 0;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            return 0; // Truncated or malformed
+        }
+        return 0;
+    }
+
+    // Turns an image stored with the given EXIF orientation upright. Orientations 5 to 8 swap width and height.
+    private static BufferedImage orient(BufferedImage source, int orientation) {
+        int w = source.getWidth();
+        int h = source.getHeight();
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);  // Flip horizontally
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h); // Rotate 180°
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);  // Flip vertically
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);   // Transpose
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);  // Rotate 90° clockwise
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w); // Transverse
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, w);  // Rotate 90° counter-clockwise
+            default -> null;
+        };
+        if (transform == null) {
+            return source;
+        }
+
+        boolean swapsSides = orientation >= 5;
+        BufferedImage target = new BufferedImage(swapsSides ? h : w, swapsSides ? w : h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.drawImage(source, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static class DecodedImage {
+        private final BufferedImage image;
+        private final int orientation;
+
+        private DecodedImage(BufferedImage image, int orientation) {
+            this.image = image;
+            this.orientation = orientation;
+        }
+    }
+}
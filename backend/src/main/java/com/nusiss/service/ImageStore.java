@@ -0,0 +1,162 @@
+package com.nusiss.service;
+
+import com.nusiss.entity.StoredImage;
+import com.nusiss.repository.StoredImageRepository;
+import com.nusiss.util.TransactionUtil;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Listing images, stored in the bucket once per distinct content and found by the SHA-256 of their bytes. Every URL
+// handed out holds a reference counted in StoredImage; an object is deleted only once the last listing using it lets go.
+// Each row gets an object key of its own, so bytes stored again after a collection never share a key with the object
+// that collection is still deleting.
+@Service
+public class ImageStore {
+
+    private final StoredImageRepository storedImageRepository;
+    private final S3Service s3Service;
+    private final ThreadPoolTaskExecutor imageUploadExecutor;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate newTransaction;
+
+    private final LongAdder uploads = new LongAdder();
+    private final LongAdder deduplications = new LongAdder();
+    private final LongAdder collections = new LongAdder();
+
+    public ImageStore(StoredImageRepository storedImageRepository,
+                      S3Service s3Service,
+                      @Qualifier("imageUploadExecutor") ThreadPoolTaskExecutor imageUploadExecutor,
+                      PlatformTransactionManager transactionManager) {
+        this.storedImageRepository = storedImageRepository;
+        this.s3Service = s3Service;
+        this.imageUploadExecutor = imageUploadExecutor;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // Returns the files' URLs in order, each with a new reference. Files whose bytes are already stored are not sent
+    // again; the others are uploaded side by side, once per distinct content. If anything fails, the references taken
+    // so far are released, which also removes objects this call was the first to upload.
+    public List<String> store(List<MultipartFile> files) {
+        // Hashing first reads each part twice, but the reads are from local disk, and a repeated image is then never
+        // sent at all; hashing only during the upload would send every duplicate to S3 before it could be recognised
+        List<String> hashes = files.stream().map(s3Service::sha256Of).toList();
+
+        List<String> referenced = new ArrayList<>();
+        try {
+            Map<String, StoredImage> images = new HashMap<>();
+            for (String hash : hashes) {
+                StoredImage image = addReference(hash);
+                images.put(hash, image);
+                referenced.add(image.getUrl());
+            }
+
+            Map<String, MultipartFile> missing = new LinkedHashMap<>();
+            for (int i = 0; i < files.size(); i++) {
+                if (!images.get(hashes.get(i)).isStored()) {
+                    missing.putIfAbsent(hashes.get(i), files.get(i));
+                }
+            }
+            deduplications.add(files.size() - missing.size());
+
+            if (!missing.isEmpty()) {
+                List<String> missingHashes = new ArrayList<>(missing.keySet());
+                List<String> keys = missingHashes.stream().map(hash -> images.get(hash).getObjectKey()).toList();
+                List<S3Service.UploadedFile> uploaded = s3Service.uploadFiles(new ArrayList<>(missing.values()), keys);
+                for (int i = 0; i < keys.size(); i++) {
+                    if (!uploaded.get(i).getSha256().equals(missingHashes.get(i))) {
+                        throw new IllegalStateException("Image " + keys.get(i) + " changed while it was uploaded");
+                    }
+                }
+                newTransaction.executeWithoutResult(status -> storedImageRepository.markStored(missingHashes));
+                uploads.add(keys.size());
+            }
+
+            return hashes.stream().map(hash -> images.get(hash).getUrl()).toList();
+        } catch (RuntimeException e) {
+            release(referenced);
+            throw e;
+        }
+    }
+
+    // One reference per URL occurrence, in the caller's transaction if there is one. URLs the store does not know,
+    // such as images uploaded before it existed, are skipped. Unreferenced objects are collected after the commit.
+    public void release(List<String> urls) {
+        if (urls.isEmpty()) {
+            return;
+        }
+
+        transaction.executeWithoutResult(status -> {
+            urls.forEach(storedImageRepository::removeReferenceByUrl);
+            TransactionUtil.runAfterCommit(() -> imageUploadExecutor.execute(() -> collect(urls)));
+        });
+    }
+
+    // For a listing whose images go from before to after: URLs it gains take a reference, URLs it drops release one
+    public void replaceReferences(List<String> before, List<String> after) {
+        List<String> added = new ArrayList<>(after);
+        before.forEach(added::remove);
+        List<String> removed = new ArrayList<>(before);
+        after.forEach(removed::remove);
+
+        if (!added.isEmpty()) {
+            transaction.executeWithoutResult(status -> added.forEach(storedImageRepository::addReferenceByUrl));
+        }
+        release(removed);
+    }
+
+    public long uploadCount() {
+        return uploads.sum();
+    }
+
+    public long deduplicationCount() {
+        return deduplications.sum();
+    }
+
+    public long collectionCount() {
+        return collections.sum();
+    }
+
+    private StoredImage addReference(String hash) {
+        try {
+            return newTransaction.execute(status -> addReferenceOrInsert(hash));
+        } catch (DataIntegrityViolationException e) {
+            // Another request inserted the same image a moment earlier; share its row instead
+            return newTransaction.execute(status -> addReferenceOrInsert(hash));
+        }
+    }
+
+    private StoredImage addReferenceOrInsert(String hash) {
+        if (storedImageRepository.addReference(hash) == 1) {
+            return storedImageRepository.findById(hash).orElseThrow();
+        }
+        String objectKey = hash + "-" + UUID.randomUUID();
+        return storedImageRepository.saveAndFlush(new StoredImage(hash, objectKey, s3Service.urlOf(objectKey)));
+    }
+
+    // The rows are claimed by deleting them in a short transaction of their own: a reference taken meanwhile waits for
+    // the row to be gone and stores the image afresh under a new key. The S3 deletes then run with no locks held.
+    private void collect(Collection<String> urls) {
+        List<StoredImage> claimed = newTransaction.execute(status -> {
+            List<StoredImage> images = storedImageRepository.findAllByUrlInAndReferenceCount(new HashSet<>(urls), 0);
+            storedImageRepository.deleteAll(images);
+            return images;
+        });
+
+        for (StoredImage image : claimed) {
+            s3Service.deleteQuietly(image.getObjectKey());
+            ImageDerivatives.keysOf(image.getObjectKey()).forEach(s3Service::deleteQuietly);
+            collections.increment();
+        }
+    }
+}
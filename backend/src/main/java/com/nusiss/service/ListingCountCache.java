@@ -0,0 +1,85 @@
+package com.nusiss.service;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+// Approximate listing totals per canonical filter key, served stale and refreshed in the background
+@Component
+public class ListingCountCache {
+
+    private final ThreadPoolTaskExecutor listingCountExecutor;
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    private final Map<String, CachedCount> counts = new ConcurrentHashMap<>();
+
+    public ListingCountCache(@Qualifier("listingCountExecutor") ThreadPoolTaskExecutor listingCountExecutor,
+                             @Value("${listing.count-cache.ttl-seconds:60}") long ttlSeconds,
+                             @Value("${listing.count-cache.max-entries:1000}") int maxEntries) {
+        this.listingCountExecutor = listingCountExecutor;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxEntries = maxEntries;
+    }
+
+    public long getCount(String filterKey, LongSupplier counter) {
+        CachedCount cached = counts.get(filterKey);
+
+        if (cached == null) {
+            // First request for this filter pays for the count once
+            long count = counter.getAsLong();
+            if (counts.size() >= maxEntries) {
+                evictOldest();
+            }
+            counts.put(filterKey, new CachedCount(count));
+            return count;
+        }
+
+        if (cached.isStale(ttlMillis) && cached.refreshing.compareAndSet(false, true)) {
+            try {
+                listingCountExecutor.execute(() -> {
+                    try {
+                        counts.put(filterKey, new CachedCount(counter.getAsLong()));
+                    } finally {
+                        cached.refreshing.set(false);
+                    }
+                });
+            } catch (TaskRejectedException e) {
+                cached.refreshing.set(false); // Left to a later request once the executor has room again
+            }
+        }
+
+        return cached.count;
+    }
+
+    public int size() {
+        return counts.size();
+    }
+
+    private void evictOldest() {
+        counts.entrySet().stream()
+                .min((a, b) -> Long.compare(a.getValue().computedAt, b.getValue().computedAt))
+                .ifPresent(oldest -> counts.remove(oldest.getKey()));
+    }
+
+    private static class CachedCount {
+        private final long count;
+        private final long computedAt = System.currentTimeMillis();
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+        private CachedCount(long count) {
+            this.count = count;
+        }
+
+        private boolean isStale(long ttlMillis) {
+            return System.currentTimeMillis() - computedAt > ttlMillis;
+        }
+    }
+}
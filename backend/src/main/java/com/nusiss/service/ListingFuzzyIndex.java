@@ -0,0 +1,261 @@
+package com.nusiss.service;
+
+import com.nusiss.entity.Listing;
+import com.nusiss.enums.ListingStatus;
+import com.nusiss.patterns.observer.ListingObserver;
+import com.nusiss.patterns.observer.ListingSubject;
+import com.nusiss.repository.ListingRepository;
+import com.nusiss.util.TitleTokenUtil;
+import com.nusiss.util.TransactionUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Typo-tolerant title lookup. Title words are posted by trigram; a query word collects the words that share
+// enough trigrams to be within its edit budget, confirms them by edit distance, and the listings
+// behind every confirmed word become the matches. A listing matches when all query words match one of its words.
+// Only active listings are indexed, and more than maxHits matches are not returned: every match is bound into an
+// id IN (...), so a common word is left to the LIKE search instead.
+// Like ListingTextIndex it only sees writes from its own instance, so it is off unless listing.fuzzy-index.enabled is set.
+@Component
+public class ListingFuzzyIndex implements ListingObserver {
+
+    private final boolean enabled;
+    private final int maxEdits;
+    private final int maxHits;
+    private final ListingRepository listingRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean ready;
+    private boolean rebuilding;
+    private final Map<UUID, Set<String>> pendingUpdates = new LinkedHashMap<>(); // Latest words per listing
+
+    private Map<String, Set<UUID>> listingsByWord = new HashMap<>();
+    private Map<String, Set<String>> wordsByTrigram = new HashMap<>();
+    private Map<UUID, Set<String>> wordsByListing = new HashMap<>();
+
+    public ListingFuzzyIndex(@Value("${listing.fuzzy-index.enabled:false}") boolean enabled,
+                             @Value("${listing.fuzzy-index.max-edits:2}") int maxEdits,
+                             @Value("${listing.fuzzy-index.max-hits:1000}") int maxHits,
+                             ListingRepository listingRepository,
+                             ListingSubject listingSubject) {
+        this.enabled = enabled;
+        this.maxEdits = maxEdits;
+        this.maxHits = maxHits;
+        this.listingRepository = listingRepository;
+
+        listingSubject.addObserver(this);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            rebuilding = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<Object[]> rows = listingRepository.findActiveTitles();
+
+        lock.writeLock().lock();
+        try {
+            listingsByWord = new HashMap<>();
+            wordsByTrigram = new HashMap<>();
+            wordsByListing = new HashMap<>();
+            for (Object[] row : rows) {
+                update((UUID) row[0], TitleTokenUtil.tokenize((String) row[1]));
+            }
+            // Saves that committed while the titles were being read are replayed on top
+            pendingUpdates.forEach(this::update);
+            pendingUpdates.clear();
+            rebuilding = false;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onListingSold(Listing listing) {
+        onListingSaved(listing);
+    }
+
+    @Override
+    public void onListingSaved(Listing listing) {
+        if (!enabled) {
+            return;
+        }
+
+        // Selling or deleting a listing takes it back out
+        UUID id = listing.getId();
+        Set<String> words = listing.getListingStatus() == ListingStatus.ACTIVE ? TitleTokenUtil.tokenize(listing.getListingTitle()) : Set.of();
+        TransactionUtil.runAfterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                if (rebuilding) {
+                    pendingUpdates.put(id, words);
+                }
+                update(id, words);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // Ids of active listings whose title matches every word of the text within the edit budget,
+    // or empty when the index is unavailable, the text has no words or there are more than maxHits matches
+    public Optional<Set<UUID>> search(String text) {
+        if (!enabled || !ready) {
+            return Optional.empty();
+        }
+
+        Set<String> queryWords = TitleTokenUtil.tokenize(text);
+        if (queryWords.isEmpty()) {
+            return Optional.empty();
+        }
+
+        lock.readLock().lock();
+        try {
+            Set<UUID> matches = null;
+            for (String queryWord : queryWords) {
+                Set<UUID> wordMatches = new HashSet<>();
+                for (String word : similarWords(queryWord)) {
+                    wordMatches.addAll(listingsByWord.get(word));
+                }
+
+                if (matches == null) {
+                    matches = wordMatches;
+                } else {
+                    matches.retainAll(wordMatches);
+                }
+                if (matches.isEmpty()) {
+                    break;
+                }
+            }
+            return matches.size() <= maxHits ? Optional.of(matches) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Short words must match exactly; longer ones may have one edit per four characters, up to maxEdits
+    private int allowedEdits(String word) {
+        return Math.min(maxEdits, word.length() / 4);
+    }
+
+    private List<String> similarWords(String queryWord) {
+        int edits = allowedEdits(queryWord);
+        if (edits == 0) {
+            return listingsByWord.containsKey(queryWord) ? List.of(queryWord) : List.of();
+        }
+
+        // One edit breaks at most three trigrams (four for a swap), so a word within budget shares at least this many
+        Set<String> queryTrigrams = trigrams(queryWord);
+        int minShared = Math.max(1, queryTrigrams.size() - 4 * edits);
+
+        Map<String, Integer> shared = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            for (String word : wordsByTrigram.getOrDefault(trigram, Set.of())) {
+                shared.merge(word, 1, Integer::sum);
+            }
+        }
+
+        List<String> similar = new ArrayList<>();
+        for (Map.Entry<String, Integer> candidate : shared.entrySet()) {
+            String word = candidate.getKey();
+            if (candidate.getValue() >= minShared
+                    && Math.abs(word.length() - queryWord.length()) <= edits
+                    && editDistance(queryWord, word, edits) <= edits) {
+                similar.add(word);
+            }
+        }
+        return similar;
+    }
+
+    // Callers hold the write lock
+    private void update(UUID id, Set<String> words) {
+        Set<String> previous = wordsByListing.getOrDefault(id, Set.of());
+        for (String word : previous) {
+            if (!words.contains(word)) {
+                Set<UUID> listings = listingsByWord.get(word);
+                listings.remove(id);
+                if (listings.isEmpty()) {
+                    listingsByWord.remove(word);
+                    for (String trigram : trigrams(word)) {
+                        Set<String> trigramWords = wordsByTrigram.get(trigram);
+                        trigramWords.remove(word);
+                        if (trigramWords.isEmpty()) {
+                            wordsByTrigram.remove(trigram);
+                        }
+                    }
+                }
+            }
+        }
+        for (String word : words) {
+            if (!previous.contains(word)) {
+                listingsByWord.computeIfAbsent(word, w -> {
+                    trigrams(w).forEach(trigram -> wordsByTrigram.computeIfAbsent(trigram, t -> new HashSet<>()).add(w));
+                    return new HashSet<>();
+                }).add(id);
+            }
+        }
+
+        if (words.isEmpty()) {
+            wordsByListing.remove(id);
+        } else {
+            wordsByListing.put(id, words);
+        }
+    }
+
+    // Padded so the start and end of a word count as well: "ex" gives $$e, $ex, ex$
+    private static Set<String> trigrams(String word) {
+        String padded = "$$" + word + "$";
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    // Edit distance counting a swap of neighbouring letters as one edit (optimal string alignment),
+    // giving up as soon as every cell of a row exceeds the limit
+    private static int editDistance(String a, String b, int limit) {
+        int[] beforePrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    current[j] = Math.min(current[j], beforePrevious[j - 2] + 1);
+                }
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > limit) {
+                return rowMin;
+            }
+            int[] swap = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
@@ -0,0 +1,182 @@
+package com.nusiss.service;
+
+import com.nusiss.dto.GetListingFilterDTO;
+import com.nusiss.entity.Listing;
+import com.nusiss.enums.*;
+import com.nusiss.util.EnumFilterUtil;
+import com.nusiss.util.TransactionUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Predicate;
+
+// Pages of listing ids per canonical filter/sort/page key. Entries are evicted when a listing that matches
+// their filter (before or after the change) is created, updated, sold or deleted. Every eviction bumps a generation,
+// and a page loaded while one happened is not cached, since it may have been read before the change committed.
+@Component
+public class ListingResultCache {
+
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    private final Map<String, CachedPage> pages;
+    private long generation;
+
+    public ListingResultCache(@Value("${listing.result-cache.ttl-seconds:30}") long ttlSeconds,
+                              @Value("${listing.result-cache.max-entries:500}") int maxEntries) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxEntries = maxEntries;
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPage> eldest) {
+                return size() > ListingResultCache.this.maxEntries;
+            }
+        };
+    }
+
+    public synchronized Optional<CachedPage> get(String key) {
+        CachedPage page = pages.get(key);
+        if (page == null) {
+            return Optional.empty();
+        }
+        if (System.currentTimeMillis() - page.cachedAt > ttlMillis) {
+            pages.remove(key);
+            return Optional.empty();
+        }
+        return Optional.of(page);
+    }
+
+    // Read before loading a page, and passed to put with it
+    public synchronized long generation() {
+        return generation;
+    }
+
+    public synchronized void put(String key, GetListingFilterDTO filter, UUID userId, List<UUID> listingIds, long totalElements,
+                                 long loadedAtGeneration) {
+        if (generation == loadedAtGeneration) {
+            pages.put(key, new CachedPage(new FilterCriteria(filter, userId), List.copyOf(listingIds), totalElements));
+        }
+    }
+
+    // Call with the listing's state before and after a change; eviction is repeated after commit so a
+    // concurrent reader cannot re-cache rows from before the change
+    public void invalidate(Listing listing) {
+        ListingState state = new ListingState(listing);
+        evictNowAndAfterCommit(page -> page.listingIds.contains(state.id) || page.criteria.matches(state));
+    }
+
+    // Seller renames and region changes move listings in and out of username/region filters
+    public void invalidateSellerFilters() {
+        evictNowAndAfterCommit(page -> page.criteria.username != null || page.criteria.regions != null);
+    }
+
+    public synchronized void clear() {
+        generation++;
+        pages.clear();
+    }
+
+    public synchronized int size() {
+        return pages.size();
+    }
+
+    private void evictNowAndAfterCommit(Predicate<CachedPage> stale) {
+        evict(stale);
+        TransactionUtil.runAfterCommit(() -> evict(stale));
+    }
+
+    private synchronized void evict(Predicate<CachedPage> stale) {
+        generation++;
+        pages.values().removeIf(stale);
+    }
+
+    public static class CachedPage {
+        private final FilterCriteria criteria;
+        private final List<UUID> listingIds;
+        private final long totalElements;
+        private final long cachedAt = System.currentTimeMillis();
+
+        private CachedPage(FilterCriteria criteria, List<UUID> listingIds, long totalElements) {
+            this.criteria = criteria;
+            this.listingIds = listingIds;
+            this.totalElements = totalElements;
+        }
+
+        public List<UUID> getListingIds() { return listingIds; }
+
+        public long getTotalElements() { return totalElements; }
+    }
+
+    // Mirrors the SearchStrategy predicates in memory; anything it cannot decide counts as a match
+    private static class FilterCriteria {
+        private final String username;
+        private final String title;
+        private final Set<CardCondition> conditions;
+        private final Set<Rarity> rarities;
+        private final Set<ListingStatus> statuses;
+        private final Set<CardType> cardTypes;
+        private final Set<Region> regions;
+        private final BigDecimal minPrice;
+        private final BigDecimal maxPrice;
+        private final UUID excludedSellerId;
+
+        private FilterCriteria(GetListingFilterDTO filter, UUID userId) {
+            this.username = filter.getUsername();
+            // A fuzzy title can match listings that do not contain it, so it is left undecided
+            this.title = filter.getListingTitle() == null || filter.isFuzzy() ? null : filter.getListingTitle().toLowerCase();
+            this.conditions = EnumFilterUtil.parse(filter.getConditions(), CardCondition::fromCardConditionDisplayName);
+            this.rarities = EnumFilterUtil.parse(filter.getRarities(), Rarity::fromRarityDisplayName);
+            this.statuses = EnumFilterUtil.parse(filter.getListingStatuses(), ListingStatus::fromListingStatusDisplayName);
+            this.cardTypes = EnumFilterUtil.parse(filter.getCardTypes(), CardType::fromCardTypeDisplayName);
+            this.regions = EnumFilterUtil.parse(filter.getRegions(), Region::fromRegionDisplayName);
+            this.minPrice = filter.getMinPrice();
+            this.maxPrice = filter.getMaxPrice();
+            this.excludedSellerId = filter.isExcludeCurrentUser() ? userId : null;
+        }
+
+        private boolean matches(ListingState listing) {
+            if (username != null && !username.equalsIgnoreCase(listing.sellerUsername)) return false;
+            if (title != null && !title.contains("%") && !title.contains("_")
+                    && (listing.title == null || !listing.title.toLowerCase().contains(title))) return false;
+            if (conditions != null && !conditions.contains(listing.cardCondition)) return false;
+            if (rarities != null && !rarities.contains(listing.rarity)) return false;
+            if (statuses != null && !statuses.contains(listing.status)) return false;
+            if (cardTypes != null && !cardTypes.contains(listing.cardType)) return false;
+            if (regions != null && !regions.contains(listing.sellerRegion)) return false;
+            if (listing.price != null) {
+                if (minPrice != null && listing.price.compareTo(minPrice) < 0) return false;
+                if (maxPrice != null && listing.price.compareTo(maxPrice) > 0) return false;
+            }
+            return excludedSellerId == null || !excludedSellerId.equals(listing.sellerId);
+        }
+
+    }
+
+    // Copy of the searchable fields, taken when invalidate is called
+    private static class ListingState {
+        private final UUID id;
+        private final String title;
+        private final CardCondition cardCondition;
+        private final Rarity rarity;
+        private final ListingStatus status;
+        private final CardType cardType;
+        private final BigDecimal price;
+        private final UUID sellerId;
+        private final String sellerUsername;
+        private final Region sellerRegion;
+
+        private ListingState(Listing listing) {
+            this.id = listing.getId();
+            this.title = listing.getListingTitle();
+            this.cardCondition = listing.getCardCondition();
+            this.rarity = listing.getRarity();
+            this.status = listing.getListingStatus();
+            this.cardType = listing.getCardType();
+            this.price = listing.getPrice();
+            this.sellerId = listing.getSeller().getId();
+            this.sellerUsername = listing.getSeller().getUsername();
+            this.sellerRegion = listing.getSeller().getRegion();
+        }
+    }
+}
@@ -1,43 +1,285 @@
 package com.nusiss.service;
 
+import com.nusiss.dto.GetListingFacetsDTO;
 import com.nusiss.dto.GetListingFilterDTO;
+import com.nusiss.dto.GetListingSummaryDTO;
+import com.nusiss.dto.GetPriceBucketDTO;
 import com.nusiss.entity.Listing;
+import com.nusiss.enums.*;
 import com.nusiss.patterns.strategy.*;
 import com.nusiss.repository.ListingRepository;
+import com.nusiss.util.ListingCursorUtil;
+import com.nusiss.util.ListingFilterKeyUtil;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class ListingSearchService {
 
     private final ListingRepository listingRepository;
+    private final ListingCountCache listingCountCache;
+    private final ListingResultCache listingResultCache;
+    private final ListingTextIndex listingTextIndex;
+    private final ListingFuzzyIndex listingFuzzyIndex;
+    private final ParallelQueryRunner parallelQueryRunner;
+    private final int priceBuckets;
 
-    public ListingSearchService(ListingRepository listingRepository) {
+    public ListingSearchService(ListingRepository listingRepository, ListingCountCache listingCountCache,
+                                ListingResultCache listingResultCache, ListingTextIndex listingTextIndex,
+                                ListingFuzzyIndex listingFuzzyIndex, ParallelQueryRunner parallelQueryRunner,
+                                @Value("${listing.facets.price-buckets:10}") int priceBuckets) {
         this.listingRepository = listingRepository;
+        this.listingCountCache = listingCountCache;
+        this.listingResultCache = listingResultCache;
+        this.listingTextIndex = listingTextIndex;
+        this.listingFuzzyIndex = listingFuzzyIndex;
+        this.parallelQueryRunner = parallelQueryRunner;
+        this.priceBuckets = priceBuckets;
     }
 
     public Page<Listing> searchListings(GetListingFilterDTO filter, UUID userId) {
+        return searchListings(filter, userId, Function.identity());
+    }
+
+    // The page's listings are mapped inside the transaction that loaded them, so lazy fields such as images can still be read.
+    // A page that has to come from the database gets its count from a second query running alongside the page query.
+    public <T> Page<T> searchListings(GetListingFilterDTO filter, UUID userId, Function<List<Listing>, List<T>> mapper) {
+        PageRequest pageRequest = createPageRequest(filter);
+
+        if ("relevance".equalsIgnoreCase(filter.getSortBy()) && hasSearchText(filter)) {
+            Optional<Map<UUID, Float>> textMatches = listingTextIndex.search(filter.getSearchText());
+            if (textMatches.isPresent()) {
+                return parallelQueryRunner.inTransaction(() -> {
+                    Page<Listing> page = searchByRelevance(filter, userId, pageRequest, textMatches.get());
+                    return new PageImpl<>(mapper.apply(page.getContent()), pageRequest, page.getTotalElements());
+                });
+            }
+        }
+
+        String cacheKey = ListingFilterKeyUtil.canonicalKey(filter, userId)
+                + ";sort=" + pageRequest.getSort()
+                + ";page=" + pageRequest.getPageNumber()
+                + ";size=" + pageRequest.getPageSize();
+
+        Optional<ListingResultCache.CachedPage> cachedPage = listingResultCache.get(cacheKey);
+        if (cachedPage.isPresent()) {
+            Optional<Page<T>> page = loadPage(cachedPage.get().getListingIds(), cachedPage.get().getTotalElements(), pageRequest, mapper);
+            if (page.isPresent()) {
+                return page.get();
+            }
+        }
+
+        long cacheGeneration = listingResultCache.generation();
+        Specification<Listing> spec = buildSpecification(filter, userId);
+        CompletableFuture<Long> totalElements = parallelQueryRunner.supplyAsync(() -> listingRepository.count(spec));
+
+        List<UUID> listingIds = new ArrayList<>();
+        List<T> content = parallelQueryRunner.inTransaction(() -> {
+            List<Listing> listings = listingRepository.findSlice(spec, pageRequest).getContent();
+            listings.forEach(listing -> listingIds.add(listing.getId()));
+            return mapper.apply(listings);
+        });
+
+        Page<T> page = new PageImpl<>(content, pageRequest, parallelQueryRunner.join(totalElements));
+        listingResultCache.put(cacheKey, filter, userId, listingIds, page.getTotalElements(), cacheGeneration);
+
+        return page;
+    }
+
+    private <T> Optional<Page<T>> loadPage(List<UUID> listingIds, long totalElements, PageRequest pageRequest, Function<List<Listing>, List<T>> mapper) {
+        return parallelQueryRunner.inTransaction(() -> loadInOrder(listingIds)
+                .map(listings -> new PageImpl<>(mapper.apply(listings), pageRequest, totalElements)));
+    }
+
+    // The database applies the other filters to the text matches; ordering by score and paging happen here
+    private Page<Listing> searchByRelevance(GetListingFilterDTO filter, UUID userId, PageRequest pageRequest, Map<UUID, Float> scores) {
+        List<UUID> listingIds = new ArrayList<>(listingRepository.findIds(buildSpecification(filter, userId, Optional.of(scores.keySet()))));
+        listingIds.sort(Comparator.comparing((UUID id) -> scores.get(id)).reversed().thenComparing(id -> id));
+
+        int from = (int) Math.min(pageRequest.getOffset(), listingIds.size());
+        int to = Math.min(from + pageRequest.getPageSize(), listingIds.size());
+        List<Listing> listings = loadInOrder(listingIds.subList(from, to)).orElseGet(List::of);
+
+        return new PageImpl<>(listings, pageRequest, listingIds.size());
+    }
+
+    // Loads cached ids back in page order; empty if any of them no longer exists
+    private Optional<List<Listing>> loadInOrder(List<UUID> listingIds) {
+        Map<UUID, Listing> listingsById = listingRepository.findAllById(listingIds).stream()
+                .collect(Collectors.toMap(Listing::getId, listing -> listing));
+
+        if (listingsById.size() != listingIds.size()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(listingIds.stream().map(listingsById::get).toList());
+    }
+
+    // Count-free variant of searchListings: only tells the caller whether another page exists
+    public Slice<Listing> sliceListings(GetListingFilterDTO filter, UUID userId) {
+        Specification<Listing> spec = buildSpecification(filter, userId);
+
+        return listingRepository.findSlice(spec, createPageRequest(filter));
+    }
+
+    // Projection variant of sliceListings: only the summary columns are read, no entities are loaded
+    public Slice<GetListingSummaryDTO> searchListingSummaries(GetListingFilterDTO filter, UUID userId) {
+        Specification<Listing> spec = buildSpecification(filter, userId);
+
+        return listingRepository.findSummarySlice(spec, createPageRequest(filter));
+    }
+
+    public long countListings(GetListingFilterDTO filter, UUID userId) {
+        return listingRepository.count(buildSpecification(filter, userId));
+    }
+
+    public long approximateCount(GetListingFilterDTO filter, UUID userId) {
+        Specification<Listing> spec = buildSpecification(filter, userId);
+
+        return listingCountCache.getCount(ListingFilterKeyUtil.canonicalKey(filter, userId), () -> listingRepository.count(spec));
+    }
+
+    // Keyset (seek) variant of searchListings: continues after the cursor instead of skipping page * size rows
+    public Window<Listing> scrollListings(GetListingFilterDTO filter, UUID userId) {
+        Specification<Listing> spec = buildSpecification(filter, userId);
+
+        String sortField = resolveSortField(filter.getSortBy());
+        Sort sort = createSort(filter.getSortBy(), filter.getSortOrder());
+        Sort.Direction direction = sort.getOrderFor(sortField).getDirection();
+        Sort keysetSort = sort.and(Sort.by(direction, "id")); // Tie-break on id so ordering is stable
+
+        ScrollPosition position = ListingCursorUtil.decode(filter.getCursor(), sortField);
+        int size = Integer.parseInt(Optional.ofNullable(filter.getSize()).orElse("100"));
+
+        return listingRepository.findBy(spec, query -> query.sortBy(keysetSort).project("seller").limit(size).scroll(position));
+    }
+
+    // One grouped query per facet instead of one COUNT per facet value. Each facet drops only its own filter,
+    // so picking a rarity still shows how many listings every other rarity would give.
+    public GetListingFacetsDTO facetListings(GetListingFilterDTO filter, UUID userId) {
+        GetListingFacetsDTO facets = new GetListingFacetsDTO();
+
+        facets.setRarities(toFacetCounts(Rarity.values(), Rarity::getRarityDisplayName,
+                listingRepository.countGroupedBy(facetSpecification(filter, userId, f -> f.setRarities(null)), "rarity")));
+        facets.setConditions(toFacetCounts(CardCondition.values(), CardCondition::getCardConditionDisplayName,
+                listingRepository.countGroupedBy(facetSpecification(filter, userId, f -> f.setConditions(null)), "cardCondition")));
+        facets.setCardTypes(toFacetCounts(CardType.values(), CardType::getCardTypeDisplayName,
+                listingRepository.countGroupedBy(facetSpecification(filter, userId, f -> f.setCardTypes(null)), "cardType")));
+        facets.setListingStatuses(toFacetCounts(ListingStatus.values(), ListingStatus::getListingStatusDisplayName,
+                listingRepository.countGroupedBy(facetSpecification(filter, userId, f -> f.setListingStatuses(null)), "listingStatus")));
+        facets.setRegions(toFacetCounts(Region.values(), Region::getRegionDisplayName,
+                listingRepository.countGroupedBy(facetSpecification(filter, userId, f -> f.setRegions(null)), "seller.region")));
+
+        facets.setPriceHistogram(createPriceHistogram(facetSpecification(filter, userId, f -> {
+            f.setMinPrice(null);
+            f.setMaxPrice(null);
+        })));
+
+        return facets;
+    }
+
+    private Specification<Listing> facetSpecification(GetListingFilterDTO filter, UUID userId, Consumer<GetListingFilterDTO> dropOwnFilter) {
+        GetListingFilterDTO facetFilter = new GetListingFilterDTO(filter);
+        dropOwnFilter.accept(facetFilter);
+        return buildSpecification(facetFilter, userId);
+    }
+
+    // Every enum value is listed, in declaration order, so the sidebar can show zero counts too
+    private <E extends Enum<E>> Map<String, Long> toFacetCounts(E[] values, Function<E, String> displayName, Map<E, Long> counts) {
+        Map<String, Long> facetCounts = new LinkedHashMap<>();
+        for (E value : values) {
+            facetCounts.put(displayName.apply(value), counts.getOrDefault(value, 0L));
+        }
+        return facetCounts;
+    }
+
+    private List<GetPriceBucketDTO> createPriceHistogram(Specification<Listing> spec) {
+        Optional<BigDecimal[]> priceRange = listingRepository.findPriceRange(spec);
+        if (priceRange.isEmpty()) {
+            return List.of();
+        }
+
+        BigDecimal minPrice = priceRange.get()[0];
+        BigDecimal maxPrice = priceRange.get()[1];
+        BigDecimal bucketWidth = maxPrice.subtract(minPrice).divide(BigDecimal.valueOf(priceBuckets), 2, RoundingMode.CEILING);
+        int bucketCount = priceBuckets;
+        if (bucketWidth.signum() == 0) {
+            bucketWidth = BigDecimal.ONE; // Every listing has the same price
+            bucketCount = 1;
+        }
+
+        Map<Integer, Long> counts = listingRepository.countByPriceBucket(spec, minPrice, bucketWidth);
+
+        List<GetPriceBucketDTO> histogram = new ArrayList<>();
+        for (int i = 0; i < bucketCount; i++) {
+            boolean lastBucket = i == bucketCount - 1;
+            BigDecimal lower = minPrice.add(bucketWidth.multiply(BigDecimal.valueOf(i)));
+            BigDecimal upper = lastBucket ? maxPrice : lower.add(bucketWidth);
+
+            long count = counts.getOrDefault(i, 0L);
+            if (lastBucket) {
+                // maxPrice itself can land one bucket past the end when the range divides evenly
+                final int last = i;
+                count += counts.entrySet().stream().filter(e -> e.getKey() > last).mapToLong(Map.Entry::getValue).sum();
+            }
+            histogram.add(new GetPriceBucketDTO(lower, upper, count));
+        }
+        return histogram;
+    }
+
+    public String createCursor(GetListingFilterDTO filter, Listing lastListing) {
+        return ListingCursorUtil.encode(resolveSortField(filter.getSortBy()), lastListing);
+    }
+
+    // Every text match, not just the best-scored ones, so no other sort, count or facet loses listings to the cap
+    private Specification<Listing> buildSpecification(GetListingFilterDTO filter, UUID userId) {
+        Optional<Set<UUID>> textMatches = hasSearchText(filter) ? listingTextIndex.matchingIds(filter.getSearchText()) : Optional.empty();
+        return buildSpecification(filter, userId, textMatches);
+    }
+
+    private Specification<Listing> buildSpecification(GetListingFilterDTO filter, UUID userId, Optional<Set<UUID>> textMatches) {
         List<SearchStrategy> strategies = new ArrayList<>();
 
+        if (hasSearchText(filter)) {
+            strategies.add(new TextSearchStrategy(textMatches.orElse(null)));
+        }
+
         if (filter.getUsername() != null) {
             strategies.add(new UsernameSearchStrategy());
         }
 
         if (filter.getListingTitle() != null) {
-            strategies.add(new TitleSearchStrategy());
+            Optional<Set<UUID>> fuzzyMatches = filter.isFuzzy() && isActiveOnly(filter) ? listingFuzzyIndex.search(filter.getListingTitle()) : Optional.empty();
+            strategies.add(fuzzyMatches.isPresent() ? new FuzzyTitleSearchStrategy(fuzzyMatches.get()) : new TitleSearchStrategy());
         }
 
         if (filter.getMinPrice() != null || filter.getMaxPrice() != null ||
                 filter.getConditions() != null || filter.getListingStatuses() != null ||
-                filter.getRarities() != null || filter.getRegions() != null) { // You create this helper method
+                filter.getRarities() != null || filter.getRegions() != null ||
+                filter.getCardTypes() != null) { // You create this helper method
             strategies.add(new FilterSearchStrategy());
         }
 
@@ -51,34 +293,51 @@ public class ListingSearchService {
             }
         }
 
+        return spec;
+    }
+
+    // ListingFuzzyIndex only holds active listings, so it can only answer searches limited to them
+    private boolean isActiveOnly(GetListingFilterDTO filter) {
+        List<String> statuses = filter.getListingStatuses();
+        return statuses != null && !statuses.isEmpty() && statuses.stream()
+                .allMatch(status -> status.trim().equalsIgnoreCase(ListingStatus.ACTIVE.getListingStatusDisplayName()));
+    }
+
+    private boolean hasSearchText(GetListingFilterDTO filter) {
+        return filter.getSearchText() != null && !filter.getSearchText().isBlank();
+    }
+
+    private PageRequest createPageRequest(GetListingFilterDTO filter) {
         Sort sort = createSort(filter.getSortBy(), filter.getSortOrder());
-        PageRequest pageRequest = PageRequest.of(
+        return PageRequest.of(
                 Integer.parseInt(Optional.ofNullable(filter.getPage()).orElse("0")),
                 Integer.parseInt(Optional.ofNullable(filter.getSize()).orElse("100")),
                 sort
         );
-
-        return listingRepository.findAll(spec, pageRequest);
     }
 
     private Sort createSort(String sortBy, String sortOrder) {
-        if (sortBy == null || sortBy.isEmpty()) {
-            sortBy = "createdOn"; // Default
-        }
-
         if (sortOrder == null || sortOrder.isEmpty()) {
             sortOrder = "asc";
         }
 
-        String sortField = switch (sortBy.toLowerCase()) {
-            case "price" -> "price";
-            case "rarity" -> "rarityPriority";
-            case "condition" -> "conditionPriority";
-            default -> "createdOn";
-        };
+        String sortField = resolveSortField(sortBy);
 
         Sort.Direction direction = sortOrder.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC;
 
         return Sort.by(direction, sortField);
     }
+
+    private String resolveSortField(String sortBy) {
+        if (sortBy == null || sortBy.isEmpty()) {
+            sortBy = "createdOn"; // Default
+        }
+
+        return switch (sortBy.toLowerCase()) {
+            case "price" -> "price";
+            case "rarity" -> "rarityPriority";
+            case "condition" -> "conditionPriority";
+            default -> "createdOn"; // Including "relevance" when there is no text index to score with
+        };
+    }
 }
@@ -19,14 +19,21 @@ import com.nusiss.util.ChangeTrackerUtil;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Window;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -39,8 +46,13 @@ public class ListingService {
     private final NotificationService notificationService;
     private final CartService cartService;
     private final ListingSearchService listingSearchService;
-    private final S3Service s3Service;
+    private final ImageStore imageStore;
+    private final ImageDerivatives imageDerivatives;
     private final ListingSubject listingSubject;
+    private final ListingResultCache listingResultCache;
+    private final ListingSuggestIndex listingSuggestIndex;
+    private final ParallelQueryRunner parallelQueryRunner;
+    private final TransactionTemplate writeTransaction;
 
     public ListingService(
             UserRepository userRepository,
@@ -49,8 +61,13 @@ public class ListingService {
             CartItemRepository cartItemRepository,
             CartService cartService,
             ListingSearchService listingSearchService,
-            S3Service s3Service,
-            ListingSubject listingSubject
+            ImageStore imageStore,
+            ImageDerivatives imageDerivatives,
+            ListingSubject listingSubject,
+            ListingResultCache listingResultCache,
+            ListingSuggestIndex listingSuggestIndex,
+            ParallelQueryRunner parallelQueryRunner,
+            PlatformTransactionManager transactionManager
     ) {
         this.userRepository = userRepository;
         this.listingRepository = listingRepository;
@@ -58,13 +75,21 @@ public class ListingService {
         this.notificationService = notificationService;
         this.cartService = cartService;
         this.listingSearchService = listingSearchService;
-        this.s3Service = s3Service;
+        this.imageStore = imageStore;
+        this.imageDerivatives = imageDerivatives;
         this.listingSubject = listingSubject;
+        this.listingResultCache = listingResultCache;
+        this.listingSuggestIndex = listingSuggestIndex;
+        this.parallelQueryRunner = parallelQueryRunner;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
 
         // 👇 Register the observer here
         listingSubject.addObserver(notificationService);
     }
 
+    // Images go to S3 before the transaction starts, so no connection is held while they stream;
+    // if saving the listing then fails, their references are released again
+    @Transactional(Transactional.TxType.SUPPORTS)
     public ResponseEntity<String> createListing(UUID id, CreateListingDTO createListingDTO, List<MultipartFile> imageFiles) {
         System.out.println("Inside createListing method");
 
@@ -72,28 +97,36 @@ public class ListingService {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("At least one image must be provided.");
         }
 
-        User seller = userRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("User not found"));
-
-        // Upload files to S3 and get URLs
-        List<String> imageUrls = new ArrayList<>();
-        for (MultipartFile file : imageFiles) {
-            String imageUrl = s3Service.uploadFile(file);
-            imageUrls.add(imageUrl);
+        if (!userRepository.existsById(id)) {
+            throw new EntityNotFoundException("User not found");
         }
 
+        ListingFactory factory = getFactoryByCardType(CardType.fromCardTypeDisplayName(createListingDTO.getCardType()));
+
+        // Store files in S3 and get URLs, in the order the files were sent; images already stored are not sent again
+        List<String> imageUrls = imageStore.store(imageFiles);
+
         // Set uploaded image URLs into the DTO
         createListingDTO.setImages(imageUrls);
 
-        ListingFactory factory = getFactoryByCardType(CardType.fromCardTypeDisplayName(createListingDTO.getCardType()));
+        withUploadedImages(imageUrls, () -> writeTransaction.execute(status -> {
+            User seller = userRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("User not found"));
 
-        Listing listing = factory.createListing(createListingDTO);
-        listing.setSeller(seller);
+            Listing listing = factory.createListing(createListingDTO);
+            listing.setSeller(seller);
 
-        listingRepository.save(listing);
+            listingRepository.save(listing);
+            listingResultCache.invalidate(listing);
+            listingSubject.notifyListingSaved(listing);
+            imageDerivatives.generateAfterCommit(listing.getImages());
+            return listing;
+        }));
         System.out.println("Listing created successfully");
         return ResponseEntity.status(HttpStatus.CREATED).body("Listing created successfully");
     }
 
+    // Like createListing: new images are uploaded first, outside the transaction that applies the update
+    @Transactional(Transactional.TxType.SUPPORTS)
     public ResponseEntity<String> updateListing(UUID listingId, UUID id, UpdateListingDTO updateListingDTO, List<MultipartFile> newImageFiles) {
         System.out.println("Inside updateUser method");
 
@@ -108,14 +141,31 @@ public class ListingService {
         System.out.println("Images received from DTO:");
         updateListingDTO.getImages().forEach(System.out::println);
 
+        // Checked before uploading, so a request for someone else's listing does not put anything in the bucket
+        Listing current = listingRepository.findById(listingId).orElseThrow(() -> new EntityNotFoundException("Listing not found"));
+        if (!current.getSeller().getId().equals(id)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("You are not allowed to update this listing.");
+        }
+
+        // Store files in S3 and get URLs, in the order the files were sent; images already stored are not sent again
+        List<String> uploadedUrls = filteredFiles.isEmpty() ? List.of() : imageStore.store(filteredFiles);
+
+        return withUploadedImages(uploadedUrls, () -> writeTransaction.execute(status ->
+                applyListingUpdate(listingId, id, updateListingDTO, uploadedUrls)));
+    }
+
+    private ResponseEntity<String> applyListingUpdate(UUID listingId, UUID id, UpdateListingDTO updateListingDTO, List<String> uploadedUrls) {
         Listing listing = listingRepository.findById(listingId).orElseThrow(() -> new EntityNotFoundException("Listing not found"));
 
         List<String> changes = new ArrayList<>();
 
         if (!listing.getSeller().getId().equals(id)) {
+            imageStore.release(uploadedUrls);
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("You are not allowed to update this listing.");
         }
 
+        listingResultCache.invalidate(listing); // Cached pages the listing belonged to before the update
+
         if(ChangeTrackerUtil.hasChanged(listing.getListingTitle(), updateListingDTO.getListingTitle())){
             listing.setListingTitle(updateListingDTO.getListingTitle());
             changes.add("Listing Title");
@@ -152,13 +202,7 @@ public class ListingService {
             finalImageUrls.addAll(updateListingDTO.getImages()); // Retained image URLs
         }
 
-        if (filteredFiles != null && !filteredFiles.isEmpty()) {
-            // Upload files to S3 and get URLs
-            for (MultipartFile file : filteredFiles) {
-                String imageUrl = s3Service.uploadFile(file);
-                finalImageUrls.add(imageUrl);
-            }
-        }
+        finalImageUrls.addAll(uploadedUrls);
 
         System.out.println("Final image URLs to be saved:");
         for (String url : finalImageUrls) {
@@ -166,7 +210,10 @@ public class ListingService {
         }
 
         if(ChangeTrackerUtil.hasChanged(listing.getImages(),finalImageUrls)) {
+            // The uploaded URLs already hold their references, so only the previous images are weighed against the retained ones
+            imageStore.replaceReferences(listing.getImages(), finalImageUrls.subList(0, finalImageUrls.size() - uploadedUrls.size()));
             listing.setImages(finalImageUrls);
+            imageDerivatives.generateAfterCommit(finalImageUrls);
             changes.add("Images");
         }
 
@@ -177,6 +224,8 @@ public class ListingService {
 
         if(!changes.isEmpty()) {
             listingRepository.save(listing);
+            listingResultCache.invalidate(listing);
+            listingSubject.notifyListingSaved(listing);
             changes.forEach(change -> System.out.println("Changed" + change));
             return ResponseEntity.status(HttpStatus.OK).body("Listing updated successfully: " + String.join(", ", changes));
         } else {
@@ -188,8 +237,10 @@ public class ListingService {
     public ResponseEntity<String> updateListingAsSold(UUID listingId) {
         Listing listing = listingRepository.findById(listingId).orElseThrow(() -> new EntityNotFoundException("Listing not found!"));
 
+        listingResultCache.invalidate(listing);
         listing.setListingStatus(ListingStatus.SOLD);
         listingRepository.save(listing);
+        listingResultCache.invalidate(listing);
 
         listingSubject.notifyObservers(listing);
 
@@ -204,8 +255,10 @@ public class ListingService {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("You are not allowed to delete this listing.");
         }
 
+        listingResultCache.invalidate(listing);
         listing.setListingStatus(ListingStatus.DELETED);
         listingRepository.save(listing);
+        listingResultCache.invalidate(listing);
 
         listingSubject.notifyObservers(listing);
 
@@ -213,41 +266,195 @@ public class ListingService {
         return ResponseEntity.status(HttpStatus.OK).body("Listing successfully soft deleted");
     }
 
+    // Not one transaction: the page and its count each run in their own, side by side,
+    // and the request thread holds no connection while it waits for them
+    @Transactional(Transactional.TxType.SUPPORTS)
     public GetListingsDTO getListings(@RequestBody GetListingFilterDTO filter, UUID userId) {
+        GetListingsDTO getListingsDTO;
+        String totalMode = Optional.ofNullable(filter.getTotalMode()).orElse("exact");
+        if (filter.getCursor() != null) {
+            getListingsDTO = getListingsByCursor(filter, userId);
+        } else if (filter.isSummaryOnly()) {
+            getListingsDTO = getListingSummaries(filter, userId, totalMode);
+        } else if (!totalMode.equalsIgnoreCase("exact")) {
+            getListingsDTO = getListingsBySlice(filter, userId, totalMode.equalsIgnoreCase("approximate"));
+        } else {
+            getListingsDTO = getListingsByPage(filter, userId);
+        }
 
-        Page<Listing> listingsPage = listingSearchService.searchListings(filter, userId);
+        // After the page's transaction has ended, so a cart that is not cached yet is read from a fresh snapshot
+        markInCart(getListingsDTO.getListings(), filter, userId);
 
-        Set<UUID> cartListingIds = filter.isExcludeCurrentUser()
-                ? cartService.getCartListingIds(userId)
-                : Collections.emptySet();
+        return getListingsDTO;
+    }
 
-        List<GetListingSummaryDTO> listingSummaries = listingsPage.getContent().stream()
-                .map(listing -> {
-                    boolean isInCart = cartListingIds.contains(listing.getId());
+    private GetListingsDTO getListingsByPage(GetListingFilterDTO filter, UUID userId) {
+        Page<GetListingSummaryDTO> summariesPage = listingSearchService.searchListings(filter, userId,
+                this::toListingSummaries);
 
-                    // Only set `isInCart` when it's not the user's own listing (exclude current user's listings)
-                    if (filter.isExcludeCurrentUser() && listing.getSeller().getId().equals(userId)) {
-                        isInCart = false; // Don't set `isInCart` for the current user's own listings
-                    }
+        GetListingsDTO getListingsDTO = new GetListingsDTO();
+        getListingsDTO.setTotalElements(summariesPage.getTotalElements());
+        getListingsDTO.setTotalPages(summariesPage.getTotalPages());
+        getListingsDTO.setCurrentPage(summariesPage.getNumber());
+        getListingsDTO.setPageSize(summariesPage.getSize());
+        getListingsDTO.setHasNext(summariesPage.hasNext());
+        getListingsDTO.setListings(summariesPage.getContent());
 
-                    return new GetListingSummaryDTO(listing, isInCart); // Create DTO with isInCart field
-                })
-                .collect(Collectors.toList());
+        return getListingsDTO;
+    }
+
+    private GetListingsDTO getListingsBySlice(GetListingFilterDTO filter, UUID userId, boolean includeApproximateTotal) {
+        CompletableFuture<Long> total = includeApproximateTotal
+                ? parallelQueryRunner.supplyAsync(() -> listingSearchService.approximateCount(filter, userId))
+                : null;
+
+        Slice<GetListingSummaryDTO> summariesSlice = parallelQueryRunner.inTransaction(() -> {
+            Slice<Listing> listingsSlice = listingSearchService.sliceListings(filter, userId);
+            return new SliceImpl<>(toListingSummaries(listingsSlice.getContent()),
+                    listingsSlice.getPageable(), listingsSlice.hasNext());
+        });
 
         GetListingsDTO getListingsDTO = new GetListingsDTO();
-        getListingsDTO.setTotalElements(listingsPage.getTotalElements());
-        getListingsDTO.setTotalPages(listingsPage.getTotalPages());
-        getListingsDTO.setCurrentPage(listingsPage.getNumber());
-        getListingsDTO.setPageSize(listingsPage.getSize());
-        getListingsDTO.setListings(listingSummaries);
+        getListingsDTO.setCurrentPage(summariesSlice.getNumber());
+        getListingsDTO.setPageSize(summariesSlice.getSize());
+        getListingsDTO.setHasNext(summariesSlice.hasNext());
+
+        if (total != null) {
+            long totalElements = parallelQueryRunner.join(total);
+            getListingsDTO.setTotalElements(totalElements);
+            getListingsDTO.setTotalPages((int) Math.ceil((double) totalElements / summariesSlice.getSize()));
+        }
+
+        getListingsDTO.setListings(summariesSlice.getContent());
 
         return getListingsDTO;
     }
 
-    public GetListingDetailsDTO getListingDetails(UUID listingId) {
-        Listing listing = listingRepository.findById(listingId).orElseThrow(() -> new EntityNotFoundException("Listing not found"));
+    private GetListingsDTO getListingSummaries(GetListingFilterDTO filter, UUID userId, String totalMode) {
+        CompletableFuture<Long> total = null;
+        if (!totalMode.equalsIgnoreCase("none")) {
+            total = parallelQueryRunner.supplyAsync(() -> totalMode.equalsIgnoreCase("approximate")
+                    ? listingSearchService.approximateCount(filter, userId)
+                    : listingSearchService.countListings(filter, userId));
+        }
 
-        return new GetListingDetailsDTO(listing);
+        Slice<GetListingSummaryDTO> summariesSlice = parallelQueryRunner.inTransaction(() -> {
+            Slice<GetListingSummaryDTO> slice = listingSearchService.searchListingSummaries(filter, userId);
+            fillMissingMainImages(slice.getContent());
+            return slice;
+        });
+
+        GetListingsDTO getListingsDTO = new GetListingsDTO();
+        getListingsDTO.setCurrentPage(summariesSlice.getNumber());
+        getListingsDTO.setPageSize(summariesSlice.getSize());
+        getListingsDTO.setHasNext(summariesSlice.hasNext());
+
+        if (total != null) {
+            long totalElements = parallelQueryRunner.join(total);
+            getListingsDTO.setTotalElements(totalElements);
+            getListingsDTO.setTotalPages((int) Math.ceil((double) totalElements / summariesSlice.getSize()));
+        }
+
+        getListingsDTO.setListings(summariesSlice.getContent());
+
+        return getListingsDTO;
+    }
+
+    // Listings saved before mainImage existed have no value in that column, so fall back to their image list
+    private void fillMissingMainImages(List<GetListingSummaryDTO> summaries) {
+        Map<UUID, GetListingSummaryDTO> missing = summaries.stream()
+                .filter(summary -> summary.getMainImage() == null)
+                .collect(Collectors.toMap(GetListingSummaryDTO::getId, summary -> summary));
+
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        for (Listing listing : listingRepository.findAllById(missing.keySet())) {
+            if (!listing.getImages().isEmpty()) {
+                missing.get(listing.getId()).setMainImage(listing.getImages().get(0));
+            }
+        }
+    }
+
+    private GetListingsDTO getListingsByCursor(GetListingFilterDTO filter, UUID userId) {
+        return parallelQueryRunner.inTransaction(() -> {
+            Window<Listing> listingsWindow = listingSearchService.scrollListings(filter, userId);
+            List<Listing> listings = listingsWindow.getContent();
+
+            GetListingsDTO getListingsDTO = new GetListingsDTO();
+            getListingsDTO.setPageSize(listings.size());
+            getListingsDTO.setHasNext(listingsWindow.hasNext());
+            if (listingsWindow.hasNext()) {
+                getListingsDTO.setNextCursor(listingSearchService.createCursor(filter, listings.get(listings.size() - 1)));
+            }
+            getListingsDTO.setListings(toListingSummaries(listings));
+
+            return getListingsDTO;
+        });
+    }
+
+    private List<GetListingSummaryDTO> toListingSummaries(List<Listing> listings) {
+        return listings.stream()
+                .map(listing -> new GetListingSummaryDTO(listing, false))
+                .collect(Collectors.toList());
+    }
+
+    // Only set when browsing as a buyer, and only the listings on this page are looked up in the cart
+    private void markInCart(List<GetListingSummaryDTO> summaries, GetListingFilterDTO filter, UUID userId) {
+        if (!filter.isExcludeCurrentUser() || summaries.isEmpty()) {
+            return;
+        }
+
+        Set<UUID> cartListingIds = cartService.getCartListingIds(userId,
+                summaries.stream().map(GetListingSummaryDTO::getId).toList());
+        summaries.forEach(summary -> summary.setInCart(
+                isInCart(cartListingIds, summary.getId(), summary.getSellerId(), filter, userId)));
+    }
+
+    private boolean isInCart(Set<UUID> cartListingIds, UUID listingId, UUID sellerId, GetListingFilterDTO filter, UUID userId) {
+        // Only set `isInCart` when it's not the user's own listing (exclude current user's listings)
+        if (filter.isExcludeCurrentUser() && sellerId.equals(userId)) {
+            return false; // Don't set `isInCart` for the current user's own listings
+        }
+
+        return cartListingIds.contains(listingId);
+    }
+
+    public List<GetListingSuggestionDTO> suggestListingTitles(String prefix, int limit) {
+        return listingSuggestIndex.suggest(prefix, Math.min(limit, 20));
+    }
+
+    public GetListingFacetsDTO getListingFacets(GetListingFilterDTO filter, UUID userId) {
+        return listingSearchService.facetListings(filter, userId);
+    }
+
+    // Loads the listing and the viewer's cart side by side, like getListings
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public GetListingDetailsDTO getListingDetails(UUID listingId, UUID userId) {
+        CompletableFuture<Set<UUID>> cartListingIds = parallelQueryRunner.supplyAsync(() -> cartService.getCartListingIds(userId, List.of(listingId)));
+
+        GetListingDetailsDTO listingDetails = parallelQueryRunner.inTransaction(() -> {
+            Listing listing = listingRepository.findById(listingId).orElseThrow(() -> new EntityNotFoundException("Listing not found"));
+            GetListingDetailsDTO details = new GetListingDetailsDTO(listing);
+            details.setImages(imageDerivatives.displayVersionsOf(details.getImages()));
+            return details;
+        });
+
+        Set<UUID> cartIds = parallelQueryRunner.join(cartListingIds);
+        listingDetails.setInCart(!listingDetails.getSellerId().equals(userId) && cartIds.contains(listingId));
+
+        return listingDetails;
+    }
+
+    // Runs the write that references freshly stored images, and releases them again if it fails
+    private <T> T withUploadedImages(List<String> uploadedUrls, Supplier<T> write) {
+        try {
+            return write.get();
+        } catch (RuntimeException e) {
+            imageStore.release(uploadedUrls);
+            throw e;
+        }
     }
 
     private ListingFactory getFactoryByCardType(CardType cardType) {
@@ -0,0 +1,227 @@
+package com.nusiss.service;
+
+import com.nusiss.dto.GetListingSuggestionDTO;
+import com.nusiss.entity.Listing;
+import com.nusiss.enums.ListingStatus;
+import com.nusiss.patterns.observer.ListingObserver;
+import com.nusiss.patterns.observer.ListingSubject;
+import com.nusiss.repository.ListingRepository;
+import com.nusiss.util.TitleTokenUtil;
+import com.nusiss.util.TransactionUtil;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Prefix trie of the words in active listing titles, for typeahead. Each word is weighted by the number of
+// active listings that use it, and every node remembers the best weight below it, so the top completions
+// are found best-first without walking the whole subtree.
+// Suggestions are allowed to lag behind writes made on other instances until the next restart.
+@Component
+public class ListingSuggestIndex implements ListingObserver {
+
+    private final ListingRepository listingRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private boolean rebuilding;
+    private final Map<UUID, Set<String>> pendingUpdates = new LinkedHashMap<>(); // Latest words per listing
+
+    private Node root = new Node();
+    private Map<UUID, Set<String>> wordsByListing = new HashMap<>();
+
+    public ListingSuggestIndex(ListingRepository listingRepository, ListingSubject listingSubject) {
+        this.listingRepository = listingRepository;
+
+        listingSubject.addObserver(this);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            rebuilding = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Node rebuiltRoot = new Node();
+        Map<UUID, Set<String>> rebuiltWords = new HashMap<>();
+        for (Object[] row : listingRepository.findActiveTitles()) {
+            Set<String> words = TitleTokenUtil.tokenize((String) row[1]);
+            rebuiltWords.put((UUID) row[0], words);
+            words.forEach(word -> add(rebuiltRoot, word, 1));
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Saves that committed while the titles were being read are replayed on top
+            pendingUpdates.forEach((id, words) -> update(rebuiltRoot, rebuiltWords, id, words));
+            pendingUpdates.clear();
+            root = rebuiltRoot;
+            wordsByListing = rebuiltWords;
+            rebuilding = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onListingSold(Listing listing) {
+        onListingSaved(listing);
+    }
+
+    // Only active listings contribute, so selling or deleting a listing takes its words back out
+    @Override
+    public void onListingSaved(Listing listing) {
+        UUID id = listing.getId();
+        Set<String> words = listing.getListingStatus() == ListingStatus.ACTIVE ? TitleTokenUtil.tokenize(listing.getListingTitle()) : Set.of();
+        TransactionUtil.runAfterCommit(() -> update(id, words));
+    }
+
+    // Completes the last word of the input, keeping the words before it
+    public List<GetListingSuggestionDTO> suggest(String input, int limit) {
+        if (input == null || limit <= 0) {
+            return List.of();
+        }
+
+        // Split into words the way titles are, so "pikachu-e" completes "e" after "pikachu-"
+        String normalized = input.toLowerCase(Locale.ROOT).stripLeading();
+        String[] tokens = normalized.split(TitleTokenUtil.SEPARATOR, -1);
+        String prefix = tokens[tokens.length - 1];
+        String leading = normalized.substring(0, normalized.length() - prefix.length());
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < prefix.length() && node != null; i++) {
+                node = node.children.get(prefix.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+
+            List<GetListingSuggestionDTO> suggestions = new ArrayList<>();
+            for (Candidate candidate : topCompletions(node, prefix, limit)) {
+                suggestions.add(new GetListingSuggestionDTO(leading + candidate.word, candidate.weight));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void update(UUID id, Set<String> words) {
+        lock.writeLock().lock();
+        try {
+            if (rebuilding) {
+                pendingUpdates.put(id, words);
+            }
+            update(root, wordsByListing, id, words);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void update(Node root, Map<UUID, Set<String>> wordsByListing, UUID id, Set<String> words) {
+        Set<String> previous = wordsByListing.getOrDefault(id, Set.of());
+        for (String word : previous) {
+            if (!words.contains(word)) {
+                add(root, word, -1);
+            }
+        }
+        for (String word : words) {
+            if (!previous.contains(word)) {
+                add(root, word, 1);
+            }
+        }
+
+        if (words.isEmpty()) {
+            wordsByListing.remove(id);
+        } else {
+            wordsByListing.put(id, words);
+        }
+    }
+
+    // Best-first search: a node is expanded only once its best weight beats every word already waiting
+    private List<Candidate> topCompletions(Node start, String prefix, int limit) {
+        PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        queue.add(new Candidate(prefix, start.bestWeight, start));
+
+        List<Candidate> completions = new ArrayList<>();
+        while (!queue.isEmpty() && completions.size() < limit) {
+            Candidate candidate = queue.poll();
+            if (candidate.node == null) {
+                completions.add(candidate);
+                continue;
+            }
+
+            Node node = candidate.node;
+            if (node.weight > 0) {
+                queue.add(new Candidate(candidate.word, node.weight, null));
+            }
+            for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+                queue.add(new Candidate(candidate.word + child.getKey(), child.getValue().bestWeight, child.getValue()));
+            }
+        }
+        return completions;
+    }
+
+    private static void add(Node root, String word, int delta) {
+        Node[] path = new Node[word.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < word.length(); i++) {
+            path[i + 1] = path[i].children.computeIfAbsent(word.charAt(i), c -> new Node());
+        }
+        path[word.length()].weight += delta;
+
+        // Recompute best weights bottom-up and drop branches that no longer hold any word
+        for (int i = word.length(); i >= 0; i--) {
+            Node node = path[i];
+            int best = node.weight;
+            for (Node child : node.children.values()) {
+                best = Math.max(best, child.bestWeight);
+            }
+            node.bestWeight = best;
+            if (i > 0 && best == 0) {
+                path[i - 1].children.remove(word.charAt(i - 1));
+            }
+        }
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private int weight; // Active listings whose title contains the word ending here
+        private int bestWeight; // Highest weight of any word in this subtree
+    }
+
+    // Either a subtree still to expand (node set) or a finished word (node null)
+    private static class Candidate implements Comparable<Candidate> {
+        private final String word;
+        private final int weight;
+        private final Node node;
+
+        private Candidate(String word, int weight, Node node) {
+            this.word = word;
+            this.weight = weight;
+            this.node = node;
+        }
+
+        // Heaviest first; on equal weight finished words come before subtrees, then alphabetical
+        @Override
+        public int compareTo(Candidate other) {
+            if (weight != other.weight) {
+                return Integer.compare(other.weight, weight);
+            }
+            if ((node == null) != (other.node == null)) {
+                return node == null ? -1 : 1;
+            }
+            return word.compareTo(other.word);
+        }
+    }
+}
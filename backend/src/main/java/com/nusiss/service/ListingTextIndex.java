@@ -0,0 +1,289 @@
+package com.nusiss.service;
+
+import com.nusiss.entity.Listing;
+import com.nusiss.patterns.observer.ListingObserver;
+import com.nusiss.patterns.observer.ListingSubject;
+import com.nusiss.repository.ListingRepository;
+import com.nusiss.util.TransactionUtil;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+
+// Embedded Lucene index over listing titles and descriptions, scored with BM25 (Lucene's default similarity).
+// Kept in memory unless listing.text-index.path is set; either way it is rebuilt from the database when empty,
+// when the application is started with --rebuild-text-index, or when the last run did not close it cleanly.
+// Updates between rebuilds are only committed on shutdown, so after a crash the index on disk is stale and is rebuilt.
+// It only sees writes from its own instance, so it is off unless listing.text-index.enabled is set.
+@Component
+public class ListingTextIndex implements ListingObserver {
+
+    private static final String ID = "id";
+    private static final String TITLE = "title";
+    private static final String DESCRIPTION = "description";
+
+    private static final float TITLE_BOOST = 2.0f;
+
+    // Commit user data: "false" from startup until close() commits, so a crash leaves it "false"
+    private static final String CLOSED_CLEANLY = "closedCleanly";
+
+    private final boolean enabled;
+    private final int maxHits;
+    private final ListingRepository listingRepository;
+    private final ApplicationArguments applicationArguments;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private Directory directory;
+    private IndexWriter indexWriter;
+    private SearcherManager searcherManager;
+
+    private volatile boolean ready;
+    private boolean rebuilding;
+    private final List<TextEntry> pendingUpdates = new ArrayList<>();
+
+    public ListingTextIndex(@Value("${listing.text-index.enabled:false}") boolean enabled,
+                            @Value("${listing.text-index.path:}") String path,
+                            @Value("${listing.text-index.max-hits:1000}") int maxHits,
+                            ListingRepository listingRepository,
+                            ListingSubject listingSubject,
+                            ApplicationArguments applicationArguments) {
+        this.enabled = enabled;
+        this.maxHits = maxHits;
+        this.listingRepository = listingRepository;
+        this.applicationArguments = applicationArguments;
+
+        if (enabled) {
+            try {
+                directory = path.isBlank() ? new ByteBuffersDirectory() : FSDirectory.open(Path.of(path));
+                indexWriter = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+                searcherManager = new SearcherManager(indexWriter, null);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open listing text index", e);
+            }
+        }
+
+        listingSubject.addObserver(this);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (!enabled) {
+            return;
+        }
+
+        if (indexWriter.getDocStats().numDocs == 0 || !closedCleanly() || applicationArguments.containsOption("rebuild-text-index")) {
+            rebuild();
+        }
+
+        try {
+            indexWriter.setLiveCommitData(Map.of(CLOSED_CLEANLY, "false").entrySet());
+            indexWriter.commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open listing text index", e);
+        }
+        ready = true;
+    }
+
+    // Re-indexes every listing; writes committed meanwhile are replayed afterwards so they are not lost
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+
+        synchronized (pendingUpdates) {
+            rebuilding = true;
+        }
+
+        try {
+            List<Object[]> rows = listingRepository.findTextIndexRows();
+
+            indexWriter.deleteAll();
+            for (Object[] row : rows) {
+                indexWriter.addDocument(toDocument((UUID) row[0], (String) row[1], (String) row[2]));
+            }
+
+            synchronized (pendingUpdates) {
+                for (TextEntry entry : pendingUpdates) {
+                    indexWriter.updateDocument(new Term(ID, entry.id.toString()), toDocument(entry.id, entry.title, entry.description));
+                }
+                pendingUpdates.clear();
+                rebuilding = false;
+            }
+
+            indexWriter.commit();
+            searcherManager.maybeRefreshBlocking();
+
+            System.out.println("Listing text index rebuilt with " + rows.size() + " listings");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not rebuild listing text index", e);
+        }
+    }
+
+    @Override
+    public void onListingSold(Listing listing) {
+        onListingSaved(listing);
+    }
+
+    @Override
+    public void onListingSaved(Listing listing) {
+        if (!enabled) {
+            return;
+        }
+
+        UUID id = listing.getId();
+        String title = listing.getListingTitle();
+        String description = listing.getDescription();
+        TransactionUtil.runAfterCommit(() -> update(id, title, description));
+    }
+
+    // Listing ids ordered by BM25 score, best first, capped at listing.text-index.max-hits. Only for ranking: weaker
+    // matches beyond the cap are left out. Empty when the index is unavailable or the text has no searchable words,
+    // so the caller can fall back.
+    public Optional<Map<UUID, Float>> search(String text) {
+        return topMatches(text, maxHits);
+    }
+
+    // Every matching listing id, for filtering, counting and facets. Also empty when there are more than
+    // listing.text-index.max-hits matches, where the caller's LIKE query does better than a long id list.
+    public Optional<Set<UUID>> matchingIds(String text) {
+        return topMatches(text, maxHits + 1)
+                .filter(matches -> matches.size() <= maxHits)
+                .map(Map::keySet);
+    }
+
+    private Optional<Map<UUID, Float>> topMatches(String text, int limit) {
+        if (!enabled || !ready) {
+            return Optional.empty();
+        }
+
+        List<String> terms = analyze(text);
+        if (terms.isEmpty()) {
+            return Optional.empty();
+        }
+
+        // Every word must occur in the title or the description; title matches weigh more
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (String term : terms) {
+            query.add(new BooleanQuery.Builder()
+                    .add(new BoostQuery(new TermQuery(new Term(TITLE, term)), TITLE_BOOST), BooleanClause.Occur.SHOULD)
+                    .add(new TermQuery(new Term(DESCRIPTION, term)), BooleanClause.Occur.SHOULD)
+                    .build(), BooleanClause.Occur.MUST);
+        }
+
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs topDocs = searcher.search(query.build(), limit);
+                StoredFields storedFields = searcher.storedFields();
+
+                Map<UUID, Float> scores = new LinkedHashMap<>();
+                for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                    scores.put(UUID.fromString(storedFields.document(scoreDoc.doc).get(ID)), scoreDoc.score);
+                }
+                return Optional.of(scores);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Listing text search failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (enabled) {
+            if (ready) {
+                indexWriter.setLiveCommitData(Map.of(CLOSED_CLEANLY, "true").entrySet());
+                indexWriter.commit();
+            }
+            searcherManager.close();
+            indexWriter.close();
+            directory.close();
+        }
+    }
+
+    private void update(UUID id, String title, String description) {
+        synchronized (pendingUpdates) {
+            if (rebuilding) {
+                pendingUpdates.add(new TextEntry(id, title, description));
+            }
+        }
+
+        try {
+            indexWriter.updateDocument(new Term(ID, id.toString()), toDocument(id, title, description));
+            searcherManager.maybeRefresh(); // Near real time: visible to the next search without a commit
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not update listing text index", e);
+        }
+    }
+
+    private boolean closedCleanly() {
+        Iterable<Map.Entry<String, String>> commitData = indexWriter.getLiveCommitData();
+        if (commitData != null) {
+            for (Map.Entry<String, String> entry : commitData) {
+                if (entry.getKey().equals(CLOSED_CLEANLY)) {
+                    return Boolean.parseBoolean(entry.getValue());
+                }
+            }
+        }
+        return false;
+    }
+
+    private Document toDocument(UUID id, String title, String description) {
+        Document document = new Document();
+        document.add(new StringField(ID, id.toString(), Field.Store.YES));
+        document.add(new TextField(TITLE, Objects.toString(title, ""), Field.Store.NO));
+        document.add(new TextField(DESCRIPTION, Objects.toString(description, ""), Field.Store.NO));
+        return document;
+    }
+
+    private List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        try (TokenStream tokens = analyzer.tokenStream(TITLE, text)) {
+            CharTermAttribute term = tokens.addAttribute(CharTermAttribute.class);
+            tokens.reset();
+            while (tokens.incrementToken()) {
+                terms.add(term.toString());
+            }
+            tokens.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+
+    private static class TextEntry {
+        private final UUID id;
+        private final String title;
+        private final String description;
+
+        private TextEntry(UUID id, String title, String description) {
+            this.id = id;
+            this.title = title;
+            this.description = description;
+        }
+    }
+}
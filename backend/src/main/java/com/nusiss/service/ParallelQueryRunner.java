@@ -0,0 +1,73 @@
+package com.nusiss.service;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Runs the independent queries of one request side by side on listingQueryExecutor, each in its own short transaction.
+// The caller must not hold a transaction while it waits, otherwise it keeps a connection the queries may need (for the
+// same reason spring.jpa.open-in-view is off, which would otherwise keep one bound to the request thread until the response);
+// inside an existing transaction everything runs inline instead, since other connections cannot see its uncommitted rows.
+@Component
+public class ParallelQueryRunner {
+
+    private final ThreadPoolTaskExecutor listingQueryExecutor;
+    private final TransactionTemplate readOnlyTransaction;
+    private final long timeoutMillis;
+
+    public ParallelQueryRunner(@Qualifier("listingQueryExecutor") ThreadPoolTaskExecutor listingQueryExecutor,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${listing.query-executor.timeout-ms:10000}") long timeoutMillis) {
+        this.listingQueryExecutor = listingQueryExecutor;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    // Starts a read-only query on listingQueryExecutor
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> query) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return CompletableFuture.completedFuture(query.get());
+        }
+
+        return CompletableFuture.supplyAsync(() -> readOnlyTransaction.execute(status -> query.get()), listingQueryExecutor);
+    }
+
+    // Runs on the calling thread, in a read-only transaction unless one is already open
+    public <T> T inTransaction(Supplier<T> query) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return query.get();
+        }
+
+        return readOnlyTransaction.execute(status -> query.get());
+    }
+
+    // Waits for a query started by supplyAsync and rethrows its own exception rather than a wrapped one
+    public <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Listing query failed", e.getCause());
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new IllegalStateException("Listing query timed out after " + timeoutMillis + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a listing query", e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.nusiss.service;
+
+import com.nusiss.exception.PasswordHashingBusyException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+
+// BCrypt on passwordHashExecutor, so hashing cannot take more than its few threads away from other requests.
+// Throws PasswordHashingBusyException when the pool's queue is full or the result takes longer than the timeout.
+// Hashes with a cost below auth.bcrypt.strength report upgradeEncoding, and are rehashed on the user's next login.
+@Component
+public class PasswordHasher implements PasswordEncoder {
+
+    private final ThreadPoolTaskExecutor passwordHashExecutor;
+    private final BCryptPasswordEncoder encoder;
+    private final long timeoutMillis;
+
+    public PasswordHasher(@Qualifier("passwordHashExecutor") ThreadPoolTaskExecutor passwordHashExecutor,
+                          @Value("${auth.bcrypt.strength:10}") int strength,
+                          @Value("${auth.password-executor.timeout-ms:5000}") long timeoutMillis) {
+        this.passwordHashExecutor = passwordHashExecutor;
+        this.encoder = new BCryptPasswordEncoder(strength);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> encoder.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    // Only reads the cost from the hash, so it stays on the calling thread
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return encoder.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = passwordHashExecutor.submit(task);
+        } catch (TaskRejectedException e) {
+            throw new PasswordHashingBusyException("Too many password checks in progress");
+        }
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new PasswordHashingBusyException("Password check timed out after " + timeoutMillis + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        }
+    }
+}
@@ -1,39 +1,304 @@
 package com.nusiss.service;
 
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.CannedAccessControlList;
-import com.amazonaws.services.s3.model.ObjectMetadata;
-import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.*;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.UUID;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 public class S3Service {
     @Value("${aws.bucketName}")
     private String bucketName;
 
+    // Files above the threshold go up as S3 multipart uploads, a few parts at a time, so an upload never holds more
+    // than part-size * parts-in-flight bytes however large the file is. S3 requires parts of at least 5 MB.
+    @Value("${aws.s3.multipart-threshold-bytes:8388608}")
+    private long multipartThresholdBytes;
+
+    @Value("${aws.s3.multipart-part-size-bytes:5242880}")
+    private int partSizeBytes;
+
+    @Value("${aws.s3.multipart-parts-in-flight:4}")
+    private int partsInFlight;
+
     private final AmazonS3 amazonS3;
+    private final ThreadPoolTaskExecutor imageUploadExecutor;
+    private final ThreadPoolTaskExecutor imagePartUploadExecutor;
+    private final long uploadTimeoutMillis;
 
-    public S3Service(AmazonS3 amazonS3) {
+    public S3Service(AmazonS3 amazonS3,
+                     @Qualifier("imageUploadExecutor") ThreadPoolTaskExecutor imageUploadExecutor,
+                     @Qualifier("imagePartUploadExecutor") ThreadPoolTaskExecutor imagePartUploadExecutor,
+                     @Value("${aws.s3.upload-timeout-ms:30000}") long uploadTimeoutMillis) {
         this.amazonS3 = amazonS3;
+        this.imageUploadExecutor = imageUploadExecutor;
+        this.imagePartUploadExecutor = imagePartUploadExecutor;
+        this.uploadTimeoutMillis = uploadTimeoutMillis;
     }
 
-    public String uploadFile(MultipartFile file) {
-        String fileName = UUID.randomUUID() + "_" + file.getOriginalFilename();
-
-        try {
+    // Reads the file once, working out its SHA-256 and content type on the way through to S3
+    public UploadedFile upload(MultipartFile file, String key) {
+        MessageDigest digest = sha256();
+        try (BufferedInputStream buffered = new BufferedInputStream(file.getInputStream());
+             DigestInputStream in = new DigestInputStream(buffered, digest)) {
             System.out.println("BucketName: " + bucketName);
-            ObjectMetadata metadata = new ObjectMetadata();
-            metadata.setContentLength(file.getSize());
-            amazonS3.putObject(new PutObjectRequest(bucketName, fileName, file.getInputStream(), metadata));
+            String contentType = sniffContentType(buffered, file.getContentType());
+
+            if (file.getSize() > multipartThresholdBytes) {
+                putMultipart(key, in, contentType);
+            } else {
+                ObjectMetadata metadata = new ObjectMetadata();
+                metadata.setContentLength(file.getSize());
+                metadata.setContentType(contentType);
+                amazonS3.putObject(new PutObjectRequest(bucketName, key, in, metadata));
+                in.transferTo(OutputStream.nullOutputStream()); // Normally nothing is left, but the digest must cover it all
+            }
+
+            return new UploadedFile(key, urlOf(key), HexFormat.of().formatHex(digest.digest()), contentType, file.getSize());
         } catch (IOException e) {
             throw new RuntimeException("Failed to upload file", e);
         }
+    }
+
+    // A pass over the file without uploading it, for callers that decide from the hash whether to upload at all.
+    // Multipart files are spooled to local disk, so this costs far less than the transfer it can save.
+    public String sha256Of(MultipartFile file) {
+        MessageDigest digest = sha256();
+        try (DigestInputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read file", e);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public String urlOf(String key) {
+        return amazonS3.getUrl(bucketName, key).toString();
+    }
+
+    // Uploads all files at once on imageUploadExecutor under the given keys and returns them in the order of the files,
+    // so a request waits for its slowest image rather than the sum of them. If any upload fails or the batch takes longer
+    // than aws.s3.upload-timeout-ms, uploads not started yet are skipped, and the call throws only once the ones already
+    // running have finished. Whatever landed is left in place for the caller: these keys belong to ImageStore, which
+    // removes them by reference count, and it must not do so while a sibling could still write its object afterwards.
+    public List<UploadedFile> uploadFiles(List<MultipartFile> files, List<String> keys) {
+        AtomicBoolean abandoned = new AtomicBoolean();
+        List<CompletableFuture<UploadedFile>> uploads = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            MultipartFile file = files.get(i);
+            String key = keys.get(i);
+            uploads.add(CompletableFuture.supplyAsync(() -> {
+                if (abandoned.get()) {
+                    throw new IllegalStateException("Upload batch abandoned");
+                }
+                return upload(file, key);
+            }, imageUploadExecutor));
+        }
+
+        return awaitAll(uploads, () -> {
+            abandoned.set(true);
+            uploads.forEach(upload -> upload.exceptionally(e -> null).join());
+        });
+    }
 
-        return amazonS3.getUrl(bucketName, fileName).toString();
+    // Results in the order of the tasks, all within aws.s3.upload-timeout-ms; onFailure runs before anything is thrown
+    private <T> List<T> awaitAll(List<CompletableFuture<T>> tasks, Runnable onFailure) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(uploadTimeoutMillis);
+        List<T> results = new ArrayList<>();
+        try {
+            for (CompletableFuture<T> task : tasks) {
+                results.add(task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+        } catch (ExecutionException e) {
+            onFailure.run();
+            throw new RuntimeException("Failed to upload file", e.getCause());
+        } catch (TimeoutException e) {
+            onFailure.run();
+            throw new RuntimeException("Uploading files timed out after " + uploadTimeoutMillis + " ms", e);
+        } catch (InterruptedException e) {
+            onFailure.run();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while uploading files", e);
+        }
+        return results;
+    }
+
+    // Small generated objects, such as image derivatives, that are already in memory
+    public String uploadBytes(String key, byte[] bytes, String contentType) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(bytes.length);
+        metadata.setContentType(contentType);
+        amazonS3.putObject(new PutObjectRequest(bucketName, key, new ByteArrayInputStream(bytes), metadata));
+        return urlOf(key);
+    }
+
+    public InputStream download(String key) {
+        return amazonS3.getObject(bucketName, key).getObjectContent();
+    }
+
+    // Parts are read one after another, since the digest needs the bytes in order, and sent in parallel on
+    // imagePartUploadExecutor. A failed part aborts the whole upload, so S3 does not keep the parts already sent.
+    private void putMultipart(String key, InputStream in, String contentType) throws IOException {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentType(contentType);
+        String uploadId = amazonS3.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucketName, key, metadata)).getUploadId();
+
+        Semaphore inFlight = new Semaphore(partsInFlight);
+        List<CompletableFuture<PartETag>> parts = new ArrayList<>();
+        try {
+            for (int partNumber = 1; ; partNumber++) {
+                inFlight.acquire();
+                byte[] part = in.readNBytes(partSizeBytes);
+                if (part.length == 0 && partNumber > 1) {
+                    inFlight.release();
+                    break;
+                }
+
+                UploadPartRequest request = new UploadPartRequest()
+                        .withBucketName(bucketName)
+                        .withKey(key)
+                        .withUploadId(uploadId)
+                        .withPartNumber(partNumber)
+                        .withInputStream(new ByteArrayInputStream(part))
+                        .withPartSize(part.length);
+                parts.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return amazonS3.uploadPart(request).getPartETag();
+                    } finally {
+                        inFlight.release();
+                    }
+                }, imagePartUploadExecutor));
+
+                if (part.length < partSizeBytes || parts.stream().anyMatch(CompletableFuture::isCompletedExceptionally)) {
+                    break;
+                }
+            }
+
+            List<PartETag> partETags = new ArrayList<>();
+            for (CompletableFuture<PartETag> part : parts) {
+                partETags.add(part.join());
+            }
+            amazonS3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, key, uploadId, partETags));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abortMultipart(key, uploadId, parts);
+            throw new IOException("Interrupted while uploading " + key, e);
+        } catch (IOException | RuntimeException e) {
+            abortMultipart(key, uploadId, parts);
+            throw e;
+        }
+    }
+
+    // Parts still being sent could outlive an abort that does not wait for them, leaving them stored in S3
+    private void abortMultipart(String key, String uploadId, List<CompletableFuture<PartETag>> parts) {
+        parts.forEach(part -> part.exceptionally(e -> null).join());
+        try {
+            amazonS3.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+        } catch (RuntimeException e) {
+            System.out.println("Failed to abort multipart upload " + key + ": " + e.getMessage());
+        }
+    }
+
+    // From the file's first bytes, falling back to what the client declared
+    private static String sniffContentType(BufferedInputStream in, String declared) throws IOException {
+        in.mark(12);
+        byte[] head = in.readNBytes(12);
+        in.reset();
+
+        if (startsWith(head, 0x89, 'P', 'N', 'G')) {
+            return "image/png";
+        }
+        if (startsWith(head, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(head, 'G', 'I', 'F', '8')) {
+            return "image/gif";
+        }
+        if (startsWith(head, 'R', 'I', 'F', 'F') && head.length >= 12
+                && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P') {
+            return "image/webp";
+        }
+        return declared != null ? declared : "application/octet-stream";
+    }
+
+    private static boolean startsWith(byte[] bytes, int... prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((bytes[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Every JVM is required to provide it
+        }
+    }
+
+    public void deleteQuietly(String key) {
+        try {
+            amazonS3.deleteObject(bucketName, key);
+        } catch (RuntimeException e) {
+            System.out.println("Failed to delete " + key + ": " + e.getMessage());
+        }
+    }
+
+    public static class UploadedFile {
+        private final String key;
+        private final String url;
+        private final String sha256;
+        private final String contentType;
+        private final long size;
+
+        public UploadedFile(String key, String url, String sha256, String contentType, long size) {
+            this.key = key;
+            this.url = url;
+            this.sha256 = sha256;
+            this.contentType = contentType;
+            this.size = size;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public long getSize() {
+            return size;
+        }
     }
 }
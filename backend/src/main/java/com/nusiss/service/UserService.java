@@ -6,10 +6,10 @@ import com.nusiss.dto.GetUserDetailsDTO;
 import com.nusiss.dto.UpdateUserDetailsDTO;
 import com.nusiss.entity.User;
 import com.nusiss.enums.Region;
+import com.nusiss.exception.PasswordHashingBusyException;
 import com.nusiss.exception.UserNotFoundException;
 import com.nusiss.repository.UserRepository;
 import com.nusiss.util.ChangeTrackerUtil;
-import com.nusiss.util.PasswordUtil;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,7 +18,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -27,16 +29,27 @@ import java.util.UUID;
 
 @Service
 @Transactional
-public class UserService implements UserDetailsService {
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
 
     private final ValidationService validationService;
 
+    private final ListingResultCache listingResultCache;
+
+    private final CredentialVersions credentialVersions;
+
+    private final PasswordHasher passwordHasher;
+
     @Autowired
-    public UserService(UserRepository userRepository, ValidationService validationService) {
+    public UserService(UserRepository userRepository, ValidationService validationService,
+                       ListingResultCache listingResultCache,
+                       CredentialVersions credentialVersions, PasswordHasher passwordHasher) {
         this.userRepository = userRepository;
         this.validationService = validationService;
+        this.listingResultCache = listingResultCache;
+        this.credentialVersions = credentialVersions;
+        this.passwordHasher = passwordHasher;
     }
 
     public ResponseEntity<String> updateUser(UUID id, UpdateUserDetailsDTO updateUserDetailsDTO) {
@@ -87,7 +100,16 @@ public class UserService implements UserDetailsService {
         }
 
         if (!changes.isEmpty()) {
+            if (changes.contains("Username")) {
+                user.credentialsChanged();
+            }
             userRepository.save(user);
+            if (changes.contains("Username") || changes.contains("Region")) {
+                listingResultCache.invalidateSellerFilters();
+            }
+            if (changes.contains("Username")) {
+                credentialVersions.credentialsChanged(user); // Tokens still name the old username
+            }
             changes.forEach(change -> System.out.println("Changed: " + change));
             return ResponseEntity.status(HttpStatus.OK)
                     .body("User updated successfully. Changes: " + String.join(", ", changes));
@@ -99,15 +121,21 @@ public class UserService implements UserDetailsService {
     public ResponseEntity<String> updatePassword(UUID id, UpdatePasswordDTO updatePasswordDTO) {
         User user = userRepository.findById(id).orElseThrow(() -> new UserNotFoundException(id));
 
-        if(!PasswordUtil.matches(updatePasswordDTO.getCurrentPassword(), user.getPassword())) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Current password is incorrect");
-        }
-        if (!validationService.isPasswordValid(updatePasswordDTO.getNewPassword())) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Password must be at least 8 characters long, include at least one letter, one number, and one symbol, and must not contain any spaces.");
-        }
+        try {
+            if(!passwordHasher.matches(updatePasswordDTO.getCurrentPassword(), user.getPassword())) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Current password is incorrect");
+            }
+            if (!validationService.isPasswordValid(updatePasswordDTO.getNewPassword())) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Password must be at least 8 characters long, include at least one letter, one number, and one symbol, and must not contain any spaces.");
+            }
 
-        user.setPassword(updatePasswordDTO.getNewPassword());
+            user.setPasswordHash(passwordHasher.encode(updatePasswordDTO.getNewPassword()));
+            user.credentialsChanged();
+        } catch (PasswordHashingBusyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Server is busy, please try again shortly.");
+        }
         userRepository.save(user);
+        credentialVersions.credentialsChanged(user);
 
         return ResponseEntity.ok("Password updated successfully");
     }
@@ -126,7 +154,7 @@ public class UserService implements UserDetailsService {
     public UserDetails loadUserByUsername(String identifier) {
         User user = userRepository.findByUsernameIgnoreCase(identifier).orElseGet(() -> {
             return userRepository.findByEmailIgnoreCase(identifier)
-                    .orElse(null);
+                    .orElseThrow(() -> new UsernameNotFoundException(identifier));
         });
 
         List<GrantedAuthority> authorities = new ArrayList<>();
@@ -135,7 +163,22 @@ public class UserService implements UserDetailsService {
                 user.getId(),
                 user.getUsername(),
                 user.getPassword(),
-                authorities // Authorities/roles — leave empty for now
+                authorities, // Authorities/roles — leave empty for now
+                user.getCredentialVersion()
         );
     }
+
+    // Called by DaoAuthenticationProvider after a successful login whose stored hash uses an outdated BCrypt cost.
+    // The password itself is unchanged, so tokens already issued stay valid.
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        AuthenticateUser authenticateUser = (AuthenticateUser) userDetails;
+        User user = userRepository.findById(authenticateUser.getUserId())
+                .orElseThrow(() -> new UserNotFoundException(authenticateUser.getUserId()));
+
+        user.setPasswordHash(newPassword);
+        userRepository.saveAndFlush(user);
+
+        return new AuthenticateUser(user.getId(), user.getUsername(), user.getPassword(), userDetails.getAuthorities(), user.getCredentialVersion());
+    }
 }
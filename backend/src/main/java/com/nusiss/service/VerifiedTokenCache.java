@@ -0,0 +1,110 @@
+package com.nusiss.service;
+
+import com.nusiss.util.JwtClaims;
+import com.nusiss.util.JwtUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+// Claims of recently verified tokens, so a client repeating its bearer token skips the signature check and claim parsing.
+// Keyed by the token's SHA-256 rather than the token itself, so the cache holds no usable credentials. An entry is
+// never served after its token expires, and least recently used entries beyond auth.token-cache.max-entries are evicted.
+// Only valid tokens are cached; the credential version check is left to the callers so revocations apply at once.
+// Setting max-entries to 0 turns the cache off.
+@Component
+public class VerifiedTokenCache {
+
+    private final JwtUtil jwtUtil;
+    private final int maxEntries;
+
+    private final Map<String, JwtClaims> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public VerifiedTokenCache(JwtUtil jwtUtil, @Value("${auth.token-cache.max-entries:10000}") int maxEntries) {
+        this.jwtUtil = jwtUtil;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, JwtClaims> eldest) {
+                if (size() > VerifiedTokenCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Optional<JwtClaims> verify(String token) {
+        if (maxEntries <= 0) {
+            return jwtUtil.verify(token);
+        }
+
+        String digest = digest(token);
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            JwtClaims cached = entries.get(digest);
+            if (cached != null) {
+                if (cached.getExpiresAt() > now) {
+                    hits.increment();
+                    return Optional.of(cached);
+                }
+                entries.remove(digest);
+                expirations.increment();
+            }
+        }
+
+        misses.increment();
+        Optional<JwtClaims> claims = jwtUtil.verify(token);
+        claims.ifPresent(verified -> {
+            synchronized (this) {
+                entries.put(digest, verified);
+            }
+        });
+        return claims;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public long expirationCount() {
+        return expirations.sum();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private static String digest(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Every JVM is required to provide it
+        }
+    }
+}
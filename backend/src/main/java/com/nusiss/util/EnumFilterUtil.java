@@ -0,0 +1,26 @@
+package com.nusiss.util;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+// Parses enum filter values the way FilterSearchStrategy does, for code that evaluates filters in memory
+public class EnumFilterUtil {
+
+    // Invalid values are ignored; null means no valid value was given, i.e. no filter
+    public static <E> Set<E> parse(List<String> values, Function<String, E> parser) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        Set<E> parsed = new HashSet<>();
+        for (String value : values) {
+            try {
+                parsed.add(parser.apply(value.trim()));
+            } catch (IllegalArgumentException e) {
+                // Ignored, as in the search
+            }
+        }
+        return parsed.isEmpty() ? null : parsed;
+    }
+}
@@ -0,0 +1,35 @@
+package com.nusiss.util;
+
+import java.util.UUID;
+
+// The claims of a token whose signature and expiry JwtUtil.verify has checked
+public class JwtClaims {
+
+    private final UUID userId;
+    private final String username;
+    private final int version;
+    private final long expiresAt; // Epoch millis
+
+    public JwtClaims(UUID userId, String username, int version, long expiresAt) {
+        this.userId = userId;
+        this.username = username;
+        this.version = version;
+        this.expiresAt = expiresAt;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+}
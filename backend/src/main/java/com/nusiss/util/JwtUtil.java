@@ -6,38 +6,49 @@ import org.springframework.stereotype.Component;
 
 import java.security.Key;
 import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
 
 @Component
 public class JwtUtil {
-    private final String SECRET_KEY = "supersecretkey12345678901234567890"; // at least 32 chars
-    private final long EXPIRATION_TIME = 1000 * 60 * 60; // 1 hour
+    private static final String SECRET_KEY = "supersecretkey12345678901234567890"; // at least 32 chars
+    public static final long EXPIRATION_TIME = 1000 * 60 * 60; // 1 hour
 
-    private Key getSigningKey() {
-        //Convert to Bytes to generate a HMAC-SHA key
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
-    }
+    // Enough to authenticate a request from the token alone, without looking the user up
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String VERSION_CLAIM = "ver";
+
+    //Convert to Bytes to generate a HMAC-SHA key. Both the key and the parser are immutable, so one of each serves every request
+    private final Key signingKey = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    private final JwtParser parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
 
-    public String generateToken(String username) {
+    public String generateToken(UUID userId, String username, int version) {
         //All the neccessary fields required in order to generate a JWT Token usually consisting of Header,Payload,Signature
         return Jwts.builder()
                 .setSubject(username)
+                .claim(USER_ID_CLAIM, userId.toString())
+                .claim(VERSION_CLAIM, version)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    public String extractUsername(String token) {
-        return Jwts.parserBuilder().setSigningKey(getSigningKey()).build()
-                .parseClaimsJws(token).getBody().getSubject();
-    }
-
-    public boolean validateToken(String token) {
+    // Checks the signature and expiry and reads the claims in a single parse. Empty for invalid or expired tokens,
+    // and for tokens issued before the user id and version claims were added
+    public Optional<JwtClaims> verify(String token) {
+        Claims claims;
         try {
-            Jwts.parserBuilder().setSigningKey(getSigningKey()).build().parseClaimsJws(token);
-            return true;
-        } catch (JwtException e) {
-            return false;
+            claims = parser.parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+
+        String userId = claims.get(USER_ID_CLAIM, String.class);
+        Integer version = claims.get(VERSION_CLAIM, Integer.class);
+        if (userId == null || version == null || claims.getSubject() == null || claims.getExpiration() == null) {
+            return Optional.empty();
         }
+        return Optional.of(new JwtClaims(UUID.fromString(userId), claims.getSubject(), version, claims.getExpiration().getTime()));
     }
 }
@@ -0,0 +1,68 @@
+package com.nusiss.util;
+
+import com.nusiss.entity.Listing;
+import org.springframework.data.domain.ScrollPosition;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+// Encodes the last (sortField, id) tuple of a listing page into an opaque continuation token
+public class ListingCursorUtil {
+
+    private static final String SEPARATOR = "|";
+
+    public static String encode(String sortField, Listing lastListing) {
+        String raw = sortField + SEPARATOR + sortValue(sortField, lastListing) + SEPARATOR + lastListing.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ScrollPosition decode(String cursor, String sortField) {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset(); // First page
+        }
+
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+
+        if (parts.length != 3 || !parts[0].equals(sortField)) {
+            throw new IllegalArgumentException("Cursor does not match sort field: " + sortField);
+        }
+
+        // Keep the sort field first so the seek predicate follows the ORDER BY, then tie-break on id
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put(sortField, parseSortValue(sortField, parts[1]));
+        keys.put("id", UUID.fromString(parts[2]));
+
+        return ScrollPosition.forward(keys);
+    }
+
+    private static String sortValue(String sortField, Listing listing) {
+        return switch (sortField) {
+            case "price" -> listing.getPrice().toPlainString();
+            case "rarityPriority" -> String.valueOf(listing.getRarityPriority());
+            case "conditionPriority" -> String.valueOf(listing.getConditionPriority());
+            default -> listing.getCreatedOn().toString();
+        };
+    }
+
+    private static Object parseSortValue(String sortField, String value) {
+        try {
+            return switch (sortField) {
+                case "price" -> new BigDecimal(value);
+                case "rarityPriority", "conditionPriority" -> Integer.valueOf(value);
+                default -> LocalDateTime.parse(value);
+            };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor value for " + sortField + ": " + value);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.nusiss.util;
+
+import com.nusiss.dto.GetListingFilterDTO;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+// Builds a canonical key for the filter part of GetListingFilterDTO (paging and sorting are left out)
+public class ListingFilterKeyUtil {
+
+    public static String canonicalKey(GetListingFilterDTO filter, UUID userId) {
+        StringBuilder key = new StringBuilder();
+        key.append("username=").append(Objects.toString(filter.getUsername(), ""));
+        key.append(";title=").append(filter.getListingTitle() == null ? "" : filter.getListingTitle().toLowerCase());
+        key.append(";fuzzy=").append(filter.isFuzzy());
+        key.append(";text=").append(filter.getSearchText() == null ? "" : filter.getSearchText().trim().toLowerCase());
+        key.append(";conditions=").append(normalize(filter.getConditions()));
+        key.append(";statuses=").append(normalize(filter.getListingStatuses()));
+        key.append(";rarities=").append(normalize(filter.getRarities()));
+        key.append(";regions=").append(normalize(filter.getRegions()));
+        key.append(";cardTypes=").append(normalize(filter.getCardTypes()));
+        key.append(";minPrice=").append(normalize(filter.getMinPrice()));
+        key.append(";maxPrice=").append(normalize(filter.getMaxPrice()));
+
+        // The current user only changes the result set when their own listings are excluded
+        key.append(";exclude=").append(filter.isExcludeCurrentUser() && userId != null ? userId : "");
+
+        return key.toString();
+    }
+
+    private static String normalize(List<String> values) {
+        if (values == null) {
+            return "";
+        }
+        return values.stream()
+                .filter(Objects::nonNull)
+                .map(value -> value.trim().toLowerCase())
+                .filter(value -> !value.isEmpty())
+                .distinct()
+                .sorted()
+                .collect(Collectors.joining(","));
+    }
+
+    private static String normalize(BigDecimal value) {
+        return value == null ? "" : value.stripTrailingZeros().toPlainString();
+    }
+}
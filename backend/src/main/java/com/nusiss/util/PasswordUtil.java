@@ -1,26 +0,0 @@
-package com.nusiss.util;
-
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
-
-public class PasswordUtil implements PasswordEncoder{
-    private static final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
-
-    public static String hashPassword(String plainPassword) {
-        return passwordEncoder.encode(plainPassword);
-    }
-
-    public static boolean matches(String plainPassword, String hashedPassword) {
-        return passwordEncoder.matches(plainPassword, hashedPassword);
-    }
-
-    @Override
-    public String encode(CharSequence rawPassword) {
-        return passwordEncoder.encode(rawPassword);
-    }
-
-    @Override
-    public boolean matches(CharSequence rawPassword, String encodedPassword) {
-        return passwordEncoder.matches(rawPassword, encodedPassword);
-    }
-}
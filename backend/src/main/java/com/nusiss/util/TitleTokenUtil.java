@@ -0,0 +1,24 @@
+package com.nusiss.util;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+public class TitleTokenUtil {
+
+    public static final String SEPARATOR = "[^\\p{L}\\p{N}]+";
+
+    // Lowercased words of a listing title; punctuation separates words, so "Pikachu-EX" gives pikachu and ex
+    public static Set<String> tokenize(String text) {
+        Set<String> words = new HashSet<>();
+        if (text == null) {
+            return words;
+        }
+        for (String word : text.toLowerCase(Locale.ROOT).split(SEPARATOR)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
@@ -19,12 +19,14 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 
 
 import java.util.ArrayList;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -50,7 +52,7 @@ public class AuthControllerIntegrationTest {
         // Insert an existing user with username "existingUsername"
         User user = new User();
         user.setUsername("existingUsername");
-        user.setPassword("Password1234!");
+        user.setPasswordHash(new BCryptPasswordEncoder(4).encode("Password1234!"));
         user.setEmail("existingUser@gmail.com");
         user.setName("existing Name");
         user.setMobileNumber("12345678");
@@ -106,4 +108,28 @@ public class AuthControllerIntegrationTest {
                 .andExpect(content().json("{\"username\":\"Username is already in use.\"}")); // Expect success message
     }
 
+    @Test
+    void login_returnsTokenAndRehashesPasswordWithOutdatedCost() throws Exception {
+        User user = userRepository.findByUsernameIgnoreCase("existingUsername").orElseThrow();
+        user.setPasswordHash(new BCryptPasswordEncoder(4).encode("Password1234!"));
+        userRepository.saveAndFlush(user);
+
+        mockMvc.perform(post("/auth/login")
+                        .contentType("application/json")
+                        .content("{\"identifier\":\"existingUsername\",\"password\":\"Password1234!\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").isNotEmpty());
+
+        String rehashed = userRepository.findByUsernameIgnoreCase("existingUsername").orElseThrow().getPassword();
+        assertTrue(rehashed.startsWith("$2a$10$"));
+        assertTrue(new BCryptPasswordEncoder().matches("Password1234!", rehashed));
+    }
+
+    @Test
+    void login_wrongPassword() throws Exception {
+        mockMvc.perform(post("/auth/login")
+                        .contentType("application/json")
+                        .content("{\"identifier\":\"existingUsername\",\"password\":\"WrongPassword1!\"}"))
+                .andExpect(status().isUnauthorized());
+    }
 }
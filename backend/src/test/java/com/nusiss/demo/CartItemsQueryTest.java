@@ -0,0 +1,126 @@
+package com.nusiss.demo;
+
+import com.nusiss.dto.GetCartItemsDTO;
+import com.nusiss.entity.Listing;
+import com.nusiss.entity.User;
+import com.nusiss.enums.*;
+import com.nusiss.repository.ListingRepository;
+import com.nusiss.repository.UserRepository;
+import com.nusiss.service.CartService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.transaction.Transactional;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+@TestPropertySource("classpath:application-test.properties")
+public class CartItemsQueryTest {
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private ListingRepository listingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private User buyer;
+
+    @BeforeEach
+    void setUp() {
+        buyer = userRepository.save(createUser("buyer"));
+        // Saved out of name order so the grouping cannot rely on insertion order
+        for (String sellerName : List.of("misty", "brock", "ash")) {
+            User seller = userRepository.save(createUser(sellerName));
+            for (int i = 0; i < 3; i++) {
+                Listing listing = listingRepository.save(createListing(sellerName + " card " + i, seller));
+                cartService.addCartItem(listing.getId(), buyer.getId());
+            }
+        }
+    }
+
+    @Test
+    void getCartItems_groupsBySellerInOneQuery() {
+        Statistics statistics = startCounting();
+
+        List<GetCartItemsDTO> groups = cartService.getCartItems(buyer.getId(), null, null);
+
+        assertEquals(List.of("ash", "brock", "misty"), groups.stream().map(GetCartItemsDTO::getSellerName).toList());
+        groups.forEach(group -> assertEquals(3, group.getItems().size()));
+        assertEquals("https://img/ash card 0.png", groups.get(0).getItems().get(0).getMainImage());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getCartItems_pagesOverSellers() {
+        Statistics statistics = startCounting();
+
+        List<GetCartItemsDTO> secondPage = cartService.getCartItems(buyer.getId(), 1, 2);
+
+        assertEquals(List.of("misty"), secondPage.stream().map(GetCartItemsDTO::getSellerName).toList());
+        assertEquals(3, secondPage.get(0).getItems().size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getCartItems_isEmptyForUserWithoutCart() {
+        User newcomer = userRepository.save(createUser("newcomer"));
+
+        assertTrue(cartService.getCartItems(newcomer.getId(), null, null).isEmpty());
+    }
+
+    private Statistics startCounting() {
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    private User createUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPasswordHash(new BCryptPasswordEncoder(4).encode("Password1234!"));
+        user.setEmail(username + "@gmail.com");
+        user.setName(username);
+        user.setMobileNumber("12345678");
+        user.setRegion(Region.values()[0]);
+        return user;
+    }
+
+    private Listing createListing(String title, User seller) {
+        Listing listing = new Listing();
+        listing.setListingTitle(title);
+        listing.setCardCondition(CardCondition.values()[0]);
+        listing.setCardType(CardType.POKEMON_CARD);
+        listing.setRarity(Rarity.values()[0]);
+        listing.setListingStatus(ListingStatus.ACTIVE);
+        listing.setPrice(BigDecimal.TEN);
+        listing.setImages(new ArrayList<>(List.of("https://img/" + title + ".png")));
+        listing.setDescription(title);
+        listing.setSeller(seller);
+        return listing;
+    }
+}
@@ -0,0 +1,103 @@
+package com.nusiss.demo;
+
+import com.nusiss.entity.Listing;
+import com.nusiss.patterns.observer.ListingSubject;
+import com.nusiss.service.CartMembershipCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CartMembershipCacheTest {
+
+    private CartMembershipCache cache;
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID listingA = UUID.randomUUID();
+    private final UUID listingB = UUID.randomUUID();
+    private final UUID listingC = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        cache = new CartMembershipCache(2, new ListingSubject());
+    }
+
+    @Test
+    void retainInCart_loadsOnceAndServesLaterLookupsFromMemory() {
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            Set<UUID> inCart = cache.retainInCart(userId, List.of(listingA, listingB, listingC), () -> {
+                loads.incrementAndGet();
+                return List.of(listingA, listingC);
+            });
+            assertEquals(Set.of(listingA, listingC), inCart);
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.missCount());
+        assertEquals(2, cache.hitCount());
+        assertEquals(2, cache.idCount());
+    }
+
+    @Test
+    void writesGoThroughWithoutReloading() {
+        load(userId, listingA);
+
+        cache.itemAdded(userId, listingB);
+        cache.itemRemoved(userId, listingA);
+
+        assertEquals(Set.of(listingB), cache.retainInCart(userId, List.of(listingA, listingB), this::failLoad));
+    }
+
+    @Test
+    void loadOverlappingAWriteIsNotCached() {
+        cache.retainInCart(userId, List.of(listingA), () -> {
+            cache.itemAdded(userId, listingA); // Committed while the cart was being read
+            return List.of();
+        });
+
+        assertEquals(Optional.empty(), cache.containsIfCached(userId, listingA));
+    }
+
+    @Test
+    void leastRecentlyUsedUserIsEvictedBeyondMaxUsers() {
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        load(userId, listingA);
+        load(second);
+        assertEquals(Optional.of(true), cache.containsIfCached(userId, listingA));
+        load(third);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictionCount());
+        assertEquals(Optional.of(true), cache.containsIfCached(userId, listingA));
+        assertEquals(Optional.empty(), cache.containsIfCached(second, listingA));
+    }
+
+    @Test
+    void onListingSold_dropsUsersHoldingTheListing() {
+        UUID otherUser = UUID.randomUUID();
+        load(userId, listingA);
+        load(otherUser, listingB);
+
+        Listing sold = new Listing();
+        ReflectionTestUtils.setField(sold, "id", listingA);
+        cache.onListingSold(sold);
+
+        assertEquals(1, cache.size());
+        assertEquals(Optional.empty(), cache.containsIfCached(userId, listingA));
+    }
+
+    private void load(UUID user, UUID... cartListingIds) {
+        cache.retainInCart(user, List.of(), () -> List.of(cartListingIds));
+    }
+
+    private Collection<UUID> failLoad() {
+        throw new AssertionError("Expected a cached lookup");
+    }
+}
@@ -0,0 +1,161 @@
+package com.nusiss.demo;
+
+import com.nusiss.entity.Listing;
+import com.nusiss.entity.User;
+import com.nusiss.enums.*;
+import com.nusiss.repository.CartItemRepository;
+import com.nusiss.repository.CartRepository;
+import com.nusiss.repository.ListingRepository;
+import com.nusiss.repository.UserRepository;
+import com.nusiss.service.CartMembershipCache;
+import com.nusiss.service.CartService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Not @Transactional: every add has to commit on its own for the unique constraints to arbitrate between threads
+@SpringBootTest
+@TestPropertySource("classpath:application-test.properties")
+public class CartServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private ListingRepository listingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CartMembershipCache cartMembershipCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private User buyer;
+    private User seller;
+    private final List<Listing> listings = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        buyer = userRepository.save(createUser("buyer"));
+        seller = userRepository.save(createUser("seller"));
+        for (int i = 0; i < THREADS; i++) {
+            listings.add(listingRepository.save(createListing("Charizard " + i)));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            cartRepository.findAll().stream()
+                    .filter(cart -> cart.getUser().getId().equals(buyer.getId()))
+                    .forEach(cartRepository::delete);
+            listingRepository.deleteAll(listings);
+            userRepository.deleteAll(List.of(buyer, seller));
+        });
+        cartMembershipCache.clear();
+    }
+
+    @Test
+    void concurrentAddsOfTheSameListing_createOneCartAndOneItem() throws Exception {
+        UUID listingId = listings.get(0).getId();
+
+        List<ResponseEntity<String>> responses = runConcurrently(i -> cartService.addCartItem(listingId, buyer.getId()));
+
+        assertEquals(1, responses.stream().filter(response -> response.getStatusCode().equals(HttpStatus.CREATED)).count());
+        assertEquals(THREADS - 1, responses.stream().filter(response -> response.getStatusCode().equals(HttpStatus.FOUND)).count());
+        assertEquals(1, cartCount());
+        assertEquals(1, cartItemRepository.findByListing_Id(listingId).size());
+    }
+
+    @Test
+    void concurrentFirstAddsOfDifferentListings_shareOneCart() throws Exception {
+        List<ResponseEntity<String>> responses = runConcurrently(i -> cartService.addCartItem(listings.get(i).getId(), buyer.getId()));
+
+        responses.forEach(response -> assertEquals(HttpStatus.CREATED, response.getStatusCode()));
+        assertEquals(1, cartCount());
+        assertEquals(THREADS, cartItemRepository.findListingIdsByUserId(buyer.getId()).size());
+    }
+
+    private List<ResponseEntity<String>> runConcurrently(IntFunction<ResponseEntity<String>> add) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<ResponseEntity<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return add.apply(thread);
+                }));
+            }
+            start.countDown();
+
+            List<ResponseEntity<String>> responses = new ArrayList<>();
+            for (Future<ResponseEntity<String>> future : futures) {
+                responses.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return responses;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long cartCount() {
+        return new TransactionTemplate(transactionManager).execute(status -> cartRepository.findAll().stream()
+                .filter(cart -> cart.getUser().getId().equals(buyer.getId()))
+                .count());
+    }
+
+    private User createUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPasswordHash(new BCryptPasswordEncoder(4).encode("Password1234!"));
+        user.setEmail(username + "@gmail.com");
+        user.setName(username);
+        user.setMobileNumber("12345678");
+        user.setRegion(Region.values()[0]);
+        return user;
+    }
+
+    private Listing createListing(String title) {
+        Listing listing = new Listing();
+        listing.setListingTitle(title);
+        listing.setCardCondition(CardCondition.values()[0]);
+        listing.setCardType(CardType.POKEMON_CARD);
+        listing.setRarity(Rarity.values()[0]);
+        listing.setListingStatus(ListingStatus.ACTIVE);
+        listing.setPrice(BigDecimal.TEN);
+        listing.setImages(new ArrayList<>(List.of("https://img/" + title + ".png")));
+        listing.setDescription(title);
+        listing.setSeller(seller);
+        return listing;
+    }
+}
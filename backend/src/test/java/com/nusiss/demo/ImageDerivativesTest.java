@@ -0,0 +1,275 @@
+package com.nusiss.demo;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nusiss.dto.CreateListingDTO;
+import com.nusiss.dto.GetListingDetailsDTO;
+import com.nusiss.dto.GetListingFilterDTO;
+import com.nusiss.dto.GetListingSummaryDTO;
+import com.nusiss.entity.Listing;
+import com.nusiss.entity.StoredImage;
+import com.nusiss.entity.User;
+import com.nusiss.enums.Region;
+import com.nusiss.repository.ListingRepository;
+import com.nusiss.repository.StoredImageRepository;
+import com.nusiss.repository.UserRepository;
+import com.nusiss.service.ListingResultCache;
+import com.nusiss.service.ImageDerivatives;
+import com.nusiss.service.ListingService;
+import com.nusiss.service.S3Service;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+// Not @Transactional: derivatives are made on imageDerivativeExecutor once the listing's transaction has committed.
+// The bucket is a map behind a mocked AmazonS3, so the generated JPEGs can be decoded and measured.
+@SpringBootTest
+@TestPropertySource("classpath:application-test.properties")
+public class ImageDerivativesTest {
+
+    @Autowired
+    private ListingService listingService;
+
+    @Autowired
+    private ListingRepository listingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private StoredImageRepository storedImageRepository;
+
+    @Autowired
+    private ListingResultCache listingResultCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private AmazonS3 amazonS3;
+
+    private final Map<String, byte[]> bucket = new ConcurrentHashMap<>();
+
+    private User seller;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setUsername("photographer");
+        user.setPasswordHash(new BCryptPasswordEncoder(4).encode("Password1234!"));
+        user.setEmail("photographer@gmail.com");
+        user.setName("photographer");
+        user.setMobileNumber("12345678");
+        user.setRegion(Region.values()[0]);
+        seller = userRepository.save(user);
+
+        Mockito.when(amazonS3.getUrl(anyString(), anyString()))
+                .thenAnswer(invocation -> new URL("https://" + invocation.getArgument(0) + ".s3.local/" + invocation.getArgument(1)));
+        Mockito.when(amazonS3.putObject(any(PutObjectRequest.class))).thenAnswer(invocation -> {
+            PutObjectRequest request = invocation.getArgument(0);
+            bucket.put(request.getKey(), request.getInputStream().readAllBytes());
+            return null;
+        });
+        Mockito.when(amazonS3.getObject(anyString(), anyString())).thenAnswer(invocation -> {
+            S3Object object = new S3Object();
+            object.setObjectContent(new ByteArrayInputStream(bucket.get(invocation.<String>getArgument(1))));
+            return object;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        List<Listing> created = listingRepository.findAll().stream()
+                .filter(listing -> listing.getSeller().getId().equals(seller.getId()))
+                .toList();
+        listingRepository.deleteAll(created);
+        userRepository.delete(seller);
+        storedImageRepository.deleteAll();
+        listingResultCache.clear();
+    }
+
+    @Test
+    void createListing_summariesShowTheThumbnailAndDetailsTheDisplayImage() throws Exception {
+        UUID listingId = createListing("Blastoise", png(2400, 1600));
+        String original = listingRepository.findById(listingId).orElseThrow().getMainImage();
+
+        await(() -> listingRepository.findById(listingId).orElseThrow().getMainThumbnail() != null);
+
+        GetListingSummaryDTO summary = summaryOf(listingId);
+        assertTrue(summary.getMainImage().endsWith("-thumb.jpg"));
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(bucket.get(keyOf(summary.getMainImage()))));
+        assertEquals(320, thumbnail.getWidth());
+        assertEquals(213, thumbnail.getHeight());
+
+        GetListingDetailsDTO details = listingService.getListingDetails(listingId, seller.getId());
+        assertTrue(details.getImages().get(0).endsWith("-display.jpg"));
+        BufferedImage display = ImageIO.read(new ByteArrayInputStream(bucket.get(keyOf(details.getImages().get(0)))));
+        assertEquals(1280, display.getWidth());
+        assertTrue(bucket.get(keyOf(details.getImages().get(0))).length < bucket.get(keyOf(original)).length);
+    }
+
+    @Test
+    void createListing_keepsTheOriginalWhenTheImageCannotBeDecoded() throws Exception {
+        UUID listingId = createListing("Mew", new byte[]{'n', 'o', 't', ' ', 'a', 'n', ' ', 'i', 'm', 'a', 'g', 'e'});
+        String original = listingRepository.findById(listingId).orElseThrow().getMainImage();
+
+        Thread.sleep(300);
+
+        assertNull(listingRepository.findById(listingId).orElseThrow().getMainThumbnail());
+        assertEquals(original, summaryOf(listingId).getMainImage());
+        assertEquals(List.of(original), listingService.getListingDetails(listingId, seller.getId()).getImages());
+    }
+
+    @Test
+    void createListing_turnsPhotosUprightByTheirExifOrientation() throws Exception {
+        // Stored sideways, left half red and right half blue, with orientation 6: turn 90° clockwise to display
+        UUID listingId = createListing("Venusaur", withExifOrientation(jpeg(2400, 1600), 6));
+
+        await(() -> listingRepository.findById(listingId).orElseThrow().getMainThumbnail() != null);
+
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(bucket.get(keyOf(summaryOf(listingId).getMainImage()))));
+        assertEquals(213, thumbnail.getWidth());
+        assertEquals(320, thumbnail.getHeight());
+        assertTrue(new Color(thumbnail.getRGB(106, 20)).getRed() > 200);
+        assertTrue(new Color(thumbnail.getRGB(106, 300)).getBlue() > 200);
+    }
+
+    @Test
+    void setDerivatives_ignoresARowStoredAgainAfterTheRenderStarted() throws Exception {
+        UUID listingId = createListing("Snorlax", png(400, 300));
+        String url = listingRepository.findById(listingId).orElseThrow().getMainImage();
+        StoredImage image = storedImageRepository.findByUrl(url).orElseThrow();
+
+        int updated = new TransactionTemplate(transactionManager).execute(status -> storedImageRepository.setDerivatives(
+                image.getSha256(), image.getCreatedOn().minusSeconds(1), "https://stale/thumb.jpg", "https://stale/display.jpg"));
+
+        assertEquals(0, updated);
+    }
+
+    @Test
+    void displayVersionsOf_schedulesAgainAfterAFullQueueTurnedTheImageAway() {
+        StoredImage image = new StoredImage("abc", "abc-key", "https://bucket.s3.local/abc-key");
+        ReflectionTestUtils.setField(image, "stored", true);
+        StoredImageRepository images = Mockito.mock(StoredImageRepository.class);
+        Mockito.when(images.findAllByUrlIn(any())).thenReturn(List.of(image));
+        ThreadPoolTaskExecutor executor = Mockito.mock(ThreadPoolTaskExecutor.class);
+        Mockito.doThrow(new TaskRejectedException("Queue full")).doNothing().when(executor).execute(any(Runnable.class));
+        ImageDerivatives derivatives = new ImageDerivatives(images, Mockito.mock(ListingRepository.class), Mockito.mock(S3Service.class),
+                executor, transactionManager, 320, 1280, 0.75f, 0.85f, 40_000_000);
+
+        assertEquals(List.of(image.getUrl()), derivatives.displayVersionsOf(List.of(image.getUrl())));
+        derivatives.displayVersionsOf(List.of(image.getUrl()));
+
+        Mockito.verify(executor, Mockito.times(2)).execute(any(Runnable.class));
+    }
+
+    private UUID createListing(String title, byte[] image) throws Exception {
+        CreateListingDTO dto = objectMapper.readValue("""
+                {"listingTitle":"%s","cardCondition":"Brand New","cardType":"Pokemon Card","rarity":"Common","price":10}
+                """.formatted(title), CreateListingDTO.class);
+        listingService.createListing(seller.getId(), dto, List.of(new MockMultipartFile("images", title + ".png", "image/png", image)));
+
+        return listingRepository.findAll().stream()
+                .filter(listing -> listing.getListingTitle().equals(title))
+                .findFirst().orElseThrow().getId();
+    }
+
+    private GetListingSummaryDTO summaryOf(UUID listingId) throws Exception {
+        GetListingFilterDTO filter = objectMapper.readValue("{\"size\":\"100\",\"summaryOnly\":true,\"totalMode\":\"none\"}", GetListingFilterDTO.class);
+        listingResultCache.clear();
+        return listingService.getListings(filter, UUID.randomUUID()).getListings().stream()
+                .filter(summary -> summary.getId().equals(listingId))
+                .findFirst().orElseThrow();
+    }
+
+    // A noisy gradient, so the original PNG is much larger than a recompressed JPEG of it
+    private static byte[] png(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(7);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, new Color((x * 255 / width + random.nextInt(8)) % 256, (y * 255 / height) % 256, 128).getRGB());
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bytes);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] jpeg(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.RED);
+        graphics.fillRect(0, 0, width / 2, height);
+        graphics.setColor(Color.BLUE);
+        graphics.fillRect(width / 2, 0, width - width / 2, height);
+        graphics.dispose();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", bytes);
+        return bytes.toByteArray();
+    }
+
+    // Inserts a big-endian EXIF APP1 segment holding only an orientation entry after the JFIF APP0 segment
+    private static byte[] withExifOrientation(byte[] jpeg, int orientation) {
+        ByteBuffer exif = ByteBuffer.allocate(2 + 2 + 6 + 8 + 2 + 12 + 4);
+        exif.putShort((short) 0xFFE1).putShort((short) (exif.capacity() - 2));
+        exif.put(new byte[]{'E', 'x', 'i', 'f', 0, 0});
+        exif.put(new byte[]{'M', 'M'}).putShort((short) 42).putInt(8);
+        exif.putShort((short) 1);
+        exif.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation).putShort((short) 0);
+        exif.putInt(0);
+
+        int app0End = 4 + (((jpeg[4] & 0xFF) << 8) | (jpeg[5] & 0xFF));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(jpeg, 0, app0End);
+        bytes.writeBytes(exif.array());
+        bytes.write(jpeg, app0End, jpeg.length - app0End);
+        return bytes.toByteArray();
+    }
+
+    private static String keyOf(String url) {
+        return url.substring(url.lastIndexOf('/') + 1);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(condition.getAsBoolean(), "Derivatives were not generated in time");
+    }
+}
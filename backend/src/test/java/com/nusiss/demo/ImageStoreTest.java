@@ -0,0 +1,149 @@
+package com.nusiss.demo;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.nusiss.repository.StoredImageRepository;
+import com.nusiss.service.ImageStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+// Not @Transactional: references are taken in transactions of their own and objects are collected after commit
+@SpringBootTest
+@TestPropertySource("classpath:application-test.properties")
+public class ImageStoreTest {
+
+    private static final byte[] FRONT = {(byte) 0x89, 'P', 'N', 'G', 1};
+    private static final byte[] BACK = {(byte) 0x89, 'P', 'N', 'G', 2};
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Autowired
+    private StoredImageRepository storedImageRepository;
+
+    @MockitoBean
+    private AmazonS3 amazonS3;
+
+    @BeforeEach
+    void setUp() {
+        Mockito.when(amazonS3.getUrl(anyString(), anyString()))
+                .thenAnswer(invocation -> new URL("https://" + invocation.getArgument(0) + ".s3.local/" + invocation.getArgument(1)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        storedImageRepository.deleteAll();
+    }
+
+    @Test
+    void store_sendsBytesThatAreAlreadyStoredOnlyOnce() throws Exception {
+        String front = imageStore.store(List.of(file("front.png", FRONT))).get(0);
+
+        List<String> urls = imageStore.store(List.of(file("front-again.png", FRONT), file("back.png", BACK), file("back-again.png", BACK)));
+
+        assertEquals(front, urls.get(0));
+        assertEquals(urls.get(1), urls.get(2));
+        assertTrue(front.contains("/" + sha256(FRONT) + "-"));
+        Mockito.verify(amazonS3, Mockito.times(2)).putObject(any(PutObjectRequest.class));
+        assertEquals(2, storedImageRepository.findById(sha256(FRONT)).orElseThrow().getReferenceCount());
+        assertEquals(2, storedImageRepository.findById(sha256(BACK)).orElseThrow().getReferenceCount());
+    }
+
+    @Test
+    void release_deletesTheObjectOnlyOnceNothingUsesIt() throws Exception {
+        String url = imageStore.store(List.of(file("front.png", FRONT))).get(0);
+        imageStore.store(List.of(file("front.png", FRONT)));
+
+        imageStore.release(List.of(url));
+        Thread.sleep(200);
+        Mockito.verify(amazonS3, Mockito.never()).deleteObject(anyString(), anyString());
+        assertEquals(1, storedImageRepository.findById(sha256(FRONT)).orElseThrow().getReferenceCount());
+
+        imageStore.release(List.of(url));
+        awaitCollected(sha256(FRONT));
+        assertFalse(storedImageRepository.existsById(sha256(FRONT)));
+        Mockito.verify(amazonS3).deleteObject(anyString(), matches(objectKeyOf(FRONT)));
+    }
+
+    @Test
+    void release_deletesObjectsOnlyAfterTheRowIsGone_andBytesStoredAgainGetANewKey() throws Exception {
+        String first = imageStore.store(List.of(file("front.png", FRONT))).get(0);
+        List<Boolean> rowGoneAtDelete = new CopyOnWriteArrayList<>();
+        Mockito.doAnswer(invocation -> rowGoneAtDelete.add(!storedImageRepository.existsById(sha256(FRONT))))
+                .when(amazonS3).deleteObject(anyString(), anyString());
+
+        imageStore.release(List.of(first));
+        awaitCollected(sha256(FRONT));
+        String second = imageStore.store(List.of(file("front.png", FRONT))).get(0);
+
+        assertEquals(List.of(true, true, true), rowGoneAtDelete); // The original and both derivative keys
+        assertNotEquals(first, second);
+        Mockito.verify(amazonS3, Mockito.never()).deleteObject(anyString(), eq(second.substring(second.lastIndexOf('/') + 1)));
+    }
+
+    @Test
+    void store_releasesItsReferencesWhenAnUploadFails() throws Exception {
+        String back = sha256(BACK);
+        Set<String> bucket = ConcurrentHashMap.newKeySet();
+        Mockito.when(amazonS3.putObject(any(PutObjectRequest.class))).thenAnswer(invocation -> {
+            PutObjectRequest request = invocation.getArgument(0);
+            if (request.getKey().startsWith(back)) {
+                throw new IllegalStateException("S3 unavailable");
+            }
+            Thread.sleep(300); // Still running when its sibling fails
+            bucket.add(request.getKey());
+            return null;
+        });
+        Mockito.doAnswer(invocation -> bucket.remove(invocation.<String>getArgument(1)))
+                .when(amazonS3).deleteObject(anyString(), anyString());
+
+        assertThrows(RuntimeException.class, () -> imageStore.store(List.of(file("front.png", FRONT), file("back.png", BACK))));
+
+        awaitCollected(sha256(FRONT), back);
+        assertEquals(0, storedImageRepository.count());
+        assertTrue(bucket.isEmpty(), "Left in the bucket: " + bucket);
+        Mockito.verify(amazonS3).deleteObject(anyString(), matches(objectKeyOf(FRONT)));
+        Mockito.verify(amazonS3).deleteObject(anyString(), matches(objectKeyOf(BACK)));
+    }
+
+    // Collection runs on imageUploadExecutor once the release has committed
+    private void awaitCollected(String... hashes) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (Arrays.stream(hashes).anyMatch(storedImageRepository::existsById) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    // The hash followed by the random part of the key, without a derivative suffix
+    private static String objectKeyOf(byte[] bytes) throws Exception {
+        return "^" + sha256(bytes) + "-[0-9a-f-]{36}$";
+    }
+
+    private static MultipartFile file(String name, byte[] bytes) {
+        return new MockMultipartFile("images", name, "image/png", bytes);
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+}
@@ -0,0 +1,146 @@
+package com.nusiss.demo;
+
+import com.nusiss.config.AuthenticateUser;
+import com.nusiss.config.JwtFilter;
+import com.nusiss.entity.User;
+import com.nusiss.repository.UserRepository;
+import com.nusiss.service.CredentialVersions;
+import com.nusiss.service.VerifiedTokenCache;
+import com.nusiss.util.JwtClaims;
+import com.nusiss.util.JwtUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JwtFilterTest {
+
+    private final JwtUtil jwtUtil = new JwtUtil();
+    private final UserRepository userRepository = Mockito.mock(UserRepository.class);
+    private final CredentialVersions credentialVersions = new CredentialVersions(userRepository);
+    private final VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache(jwtUtil, 2);
+    private final JwtFilter jwtFilter = new JwtFilter();
+
+    private final UUID userId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(jwtFilter, "verifiedTokenCache", verifiedTokenCache);
+        ReflectionTestUtils.setField(jwtFilter, "credentialVersions", credentialVersions);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void principalIsBuiltFromTheTokenClaims() throws Exception {
+        Authentication authentication = filter(jwtUtil.generateToken(userId, "JohnDoe", 3));
+
+        assertNotNull(authentication);
+        AuthenticateUser principal = (AuthenticateUser) authentication.getPrincipal();
+        assertEquals(userId, principal.getUserId());
+        assertEquals("JohnDoe", principal.getUsername());
+    }
+
+    @Test
+    void tamperedOrMalformedTokensLeaveTheRequestUnauthenticated() throws Exception {
+        String token = jwtUtil.generateToken(userId, "JohnDoe", 3);
+        int middleOfSignature = token.length() - 20;
+        char flipped = token.charAt(middleOfSignature) == 'A' ? 'B' : 'A';
+        String tampered = token.substring(0, middleOfSignature) + flipped + token.substring(middleOfSignature + 1);
+
+        assertNull(filter(tampered));
+        assertNull(filter("not-a-jwt"));
+    }
+
+    @Test
+    void tokensIssuedBeforeACredentialChangeAreRefused() throws Exception {
+        String oldToken = jwtUtil.generateToken(userId, "JohnDoe", 3);
+        String newToken = jwtUtil.generateToken(userId, "JohnDoe", 4);
+
+        User user = new User();
+        user.setId(userId);
+        ReflectionTestUtils.setField(user, "credentialVersion", 3);
+        user.credentialsChanged();
+        credentialVersions.credentialsChanged(user); // No transaction here, so it applies straight away
+
+        assertNull(filter(oldToken));
+        assertNotNull(filter(newToken));
+    }
+
+    @Test
+    void credentialChangesStoredOnUsersAreEnforcedAfterARestart() throws Exception {
+        String oldToken = jwtUtil.generateToken(userId, "JohnDoe", 3);
+        String newToken = jwtUtil.generateToken(userId, "JohnDoe", 4);
+        List<Object[]> changes = new ArrayList<>();
+        changes.add(new Object[]{userId, 4, LocalDateTime.now().minusMinutes(10)});
+        changes.add(new Object[]{UUID.randomUUID(), 2, LocalDateTime.now().minusMinutes(5)});
+        Mockito.when(userRepository.findCredentialChangesSince(Mockito.any())).thenReturn(changes);
+
+        credentialVersions.onStartup();
+
+        assertEquals(2, credentialVersions.size());
+        assertNull(filter(oldToken));
+        assertNotNull(filter(newToken));
+    }
+
+    @Test
+    void repeatedTokensAreServedFromTheCacheWithinItsBound() throws Exception {
+        String first = jwtUtil.generateToken(userId, "JohnDoe", 3);
+        String second = jwtUtil.generateToken(userId, "JohnDoe", 4);
+        String third = jwtUtil.generateToken(userId, "JohnDoe", 5);
+
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(filter(first));
+        }
+        assertEquals(1, verifiedTokenCache.missCount());
+        assertEquals(2, verifiedTokenCache.hitCount());
+
+        filter(second);
+        filter(third);
+        assertEquals(2, verifiedTokenCache.size());
+        assertEquals(1, verifiedTokenCache.evictionCount());
+
+        filter("not-a-jwt");
+        assertEquals(2, verifiedTokenCache.size()); // Invalid tokens are not cached
+    }
+
+    @Test
+    void cachedTokensAreNotServedPastTheirExpiry() throws Exception {
+        String token = jwtUtil.generateToken(userId, "JohnDoe", 3);
+        filter(token);
+
+        @SuppressWarnings("unchecked")
+        Map<String, JwtClaims> entries = (Map<String, JwtClaims>) ReflectionTestUtils.getField(verifiedTokenCache, "entries");
+        entries.replaceAll((digest, claims) -> new JwtClaims(claims.getUserId(), claims.getUsername(), claims.getVersion(), 0));
+
+        filter(token); // Still valid for JwtUtil, so verified afresh rather than served expired
+        assertEquals(1, verifiedTokenCache.expirationCount());
+        assertEquals(2, verifiedTokenCache.missCount());
+    }
+
+    private Authentication filter(String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/listing/get-listings");
+        request.addHeader("Authorization", "Bearer " + token);
+
+        jwtFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
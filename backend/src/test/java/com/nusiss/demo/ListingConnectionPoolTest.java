@@ -0,0 +1,147 @@
+package com.nusiss.demo;
+
+import com.nusiss.config.AuthenticateUser;
+import com.nusiss.entity.Listing;
+import com.nusiss.entity.User;
+import com.nusiss.enums.*;
+import com.nusiss.repository.ListingRepository;
+import com.nusiss.repository.UserRepository;
+import com.nusiss.service.ListingResultCache;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+// The pool is held at its limit of one connection, and listingQueryExecutor's only thread is kept busy until the request
+// has taken that connection for its page, so the count can only start after the page. If the request thread kept the
+// connection while waiting for the count (as it does with open-in-view) the count could never get one and the request
+// would fail; it must instead have handed the connection back.
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+        "spring.datasource.hikari.maximum-pool-size=1",
+        "spring.datasource.hikari.connection-timeout=10000",
+        "listing.query-executor.pool-size=1",
+        "listing.query-executor.timeout-ms=20000"
+})
+public class ListingConnectionPoolTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ListingRepository listingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ListingResultCache listingResultCache;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    @Qualifier("listingQueryExecutor")
+    private ThreadPoolTaskExecutor listingQueryExecutor;
+
+    private User seller;
+    private final List<Listing> listings = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setUsername("poolseller");
+        user.setPasswordHash(new BCryptPasswordEncoder(4).encode("Password1234!"));
+        user.setEmail("poolseller@gmail.com");
+        user.setName("poolseller");
+        user.setMobileNumber("12345678");
+        user.setRegion(Region.values()[0]);
+        seller = userRepository.save(user);
+
+        for (int i = 0; i < 3; i++) {
+            Listing listing = new Listing();
+            listing.setListingTitle("Gengar " + i);
+            listing.setCardCondition(CardCondition.values()[0]);
+            listing.setCardType(CardType.POKEMON_CARD);
+            listing.setRarity(Rarity.values()[0]);
+            listing.setListingStatus(ListingStatus.ACTIVE);
+            listing.setPrice(BigDecimal.valueOf(10 + i));
+            listing.setImages(new ArrayList<>(List.of("https://img/gengar-" + i + ".png")));
+            listing.setSeller(seller);
+            listings.add(listingRepository.save(listing));
+        }
+        listingResultCache.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        listingRepository.deleteAll(listings);
+        userRepository.delete(seller);
+        listingResultCache.clear();
+    }
+
+    @Test
+    void getListings_countGetsTheConnectionTheWaitingRequestThreadGaveBack() throws Exception {
+        AuthenticateUser viewer = new AuthenticateUser(seller.getId(), seller.getUsername(), seller.getPassword(), new ArrayList<>());
+        UsernamePasswordAuthenticationToken token = new UsernamePasswordAuthenticationToken(viewer, null, viewer.getAuthorities());
+        HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+
+        // Once without the blocker, so the measured request does not pay for the first query's warm-up
+        assertEquals(200, getListings(token, "{\"username\":\"poolseller\"}"));
+
+        CountDownLatch pageStarted = new CountDownLatch(1);
+        listingQueryExecutor.execute(() -> {
+            try {
+                pageStarted.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        ExecutorService requests = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> status = requests.submit(() -> getListings(token, "{\"username\":\"poolseller\",\"minPrice\":1}"));
+
+            // The blocker holds no connection, so the first one handed out is the request's
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (pool.getActiveConnections() == 0 && !status.isDone() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            pageStarted.countDown();
+
+            assertEquals(200, status.get(30, TimeUnit.SECONDS));
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+
+    private int getListings(UsernamePasswordAuthenticationToken token, String filter) throws Exception {
+        return mockMvc.perform(post("/listing/get-all-listing")
+                        .with(authentication(token))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(filter))
+                .andReturn().getResponse().getStatus();
+    }
+}
@@ -0,0 +1,33 @@
+package com.nusiss.demo;
+
+import com.nusiss.service.ListingCountCache;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+public class ListingCountCacheTest {
+
+    @Test
+    void getCount_refreshesAgainAfterAFullExecutorTurnedTheRefreshAway() throws Exception {
+        ThreadPoolTaskExecutor executor = Mockito.mock(ThreadPoolTaskExecutor.class);
+        Mockito.doThrow(new TaskRejectedException("Queue full"))
+                .doAnswer(invocation -> {
+                    invocation.<Runnable>getArgument(0).run();
+                    return null;
+                })
+                .when(executor).execute(any(Runnable.class));
+        ListingCountCache cache = new ListingCountCache(executor, 1, 10);
+
+        assertEquals(1, cache.getCount("all", () -> 1));
+        Thread.sleep(1100);
+        assertEquals(1, cache.getCount("all", () -> 2)); // Rejected, the stale count is served
+        assertEquals(1, cache.getCount("all", () -> 3)); // Served stale while this refresh runs
+        assertEquals(3, cache.getCount("all", () -> 4));
+
+        Mockito.verify(executor, Mockito.times(2)).execute(any(Runnable.class));
+    }
+}
@@ -0,0 +1,128 @@
+package com.nusiss.demo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nusiss.dto.GetListingFacetsDTO;
+import com.nusiss.dto.GetListingFilterDTO;
+import com.nusiss.dto.GetPriceBucketDTO;
+import com.nusiss.entity.Listing;
+import com.nusiss.entity.User;
+import com.nusiss.enums.*;
+import com.nusiss.repository.ListingRepository;
+import com.nusiss.repository.UserRepository;
+import com.nusiss.service.ListingService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.transaction.Transactional;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@Transactional
+@TestPropertySource("classpath:application-test.properties")
+public class ListingFacetTest {
+
+    @Autowired
+    private ListingService listingService;
+
+    @Autowired
+    private ListingRepository listingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private User seller;
+
+    @BeforeEach
+    void setUp() {
+        seller = new User();
+        seller.setUsername("facetseller");
+        seller.setPasswordHash(new BCryptPasswordEncoder(4).encode("Password1234!"));
+        seller.setEmail("facetseller@gmail.com");
+        seller.setName("Facet Seller");
+        seller.setMobileNumber("12345678");
+        seller.setRegion(Region.CENTRAL_REGION);
+        seller = userRepository.save(seller);
+
+        // 20 listings priced 10..29, alternating Common/Rare and Pokemon/Trainer
+        for (int i = 0; i < 20; i++) {
+            Listing listing = new Listing();
+            listing.setListingTitle("Card " + i);
+            listing.setCardCondition(CardCondition.values()[0]);
+            listing.setCardType(i % 2 == 0 ? CardType.POKEMON_CARD : CardType.TRAINER_CARD);
+            listing.setRarity(i % 4 < 2 ? Rarity.COMMON : Rarity.RARE);
+            listing.setListingStatus(ListingStatus.ACTIVE);
+            listing.setPrice(BigDecimal.valueOf(10 + i));
+            listing.setImages(new ArrayList<>(List.of("https://img/" + i + ".png")));
+            listing.setDescription("Card " + i);
+            listing.setSeller(seller);
+            listingRepository.save(listing);
+        }
+    }
+
+    @Test
+    void facets_excludeOnlyTheirOwnFilter() throws Exception {
+        GetListingFacetsDTO facets = facets("{\"rarities\":[\"Common\"],\"cardTypes\":[\"Pokemon Card\"]}");
+
+        // Rarity counts ignore the rarity filter but keep the card type filter
+        assertEquals(5L, facets.getRarities().get("Common"));
+        assertEquals(5L, facets.getRarities().get("Rare"));
+        assertEquals(0L, facets.getRarities().get("Hyper Rare"));
+
+        // Card type counts ignore the card type filter but keep the rarity filter
+        assertEquals(5L, facets.getCardTypes().get("Pokemon Card"));
+        assertEquals(5L, facets.getCardTypes().get("Trainer Card"));
+
+        // Other facets apply both filters
+        assertEquals(5L, facets.getListingStatuses().get("Active"));
+        assertEquals(5L, facets.getRegions().get("Central Region"));
+    }
+
+    @Test
+    void priceHistogram_ignoresPriceFilterAndCoversEveryListing() throws Exception {
+        GetListingFacetsDTO facets = facets("{\"minPrice\":20,\"maxPrice\":22}");
+
+        List<GetPriceBucketDTO> histogram = facets.getPriceHistogram();
+        assertEquals(10, histogram.size());
+        assertEquals(0, new BigDecimal("10").compareTo(histogram.get(0).getMinPrice()));
+        assertEquals(0, new BigDecimal("29").compareTo(histogram.get(9).getMaxPrice()));
+        assertEquals(20L, histogram.stream().mapToLong(GetPriceBucketDTO::getCount).sum());
+    }
+
+    @Test
+    void facets_useOneQueryPerFacet() throws Exception {
+        entityManager.flush(); // Keep the setUp inserts out of the count
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        facets("{\"rarities\":[\"Common\"]}");
+
+        // Five grouped facet queries plus the price range and the bucket query
+        assertEquals(7, statistics.getPrepareStatementCount());
+    }
+
+    private GetListingFacetsDTO facets(String filterJson) throws Exception {
+        GetListingFilterDTO filter = objectMapper.readValue(filterJson, GetListingFilterDTO.class);
+        return listingService.getListingFacets(filter, seller.getId());
+    }
+}
@@ -0,0 +1,84 @@
+package com.nusiss.demo;
+
+import com.nusiss.entity.Listing;
+import com.nusiss.enums.ListingStatus;
+import com.nusiss.patterns.observer.ListingSubject;
+import com.nusiss.repository.ListingRepository;
+import com.nusiss.service.ListingFuzzyIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ListingFuzzyIndexTest {
+
+    private final UUID charizard = UUID.randomUUID();
+    private final UUID pikachuEx = UUID.randomUUID();
+    private final UUID pikachuGx = UUID.randomUUID();
+
+    private ListingFuzzyIndex index;
+
+    @BeforeEach
+    void setUp() {
+        ListingRepository listingRepository = Mockito.mock(ListingRepository.class);
+        Mockito.when(listingRepository.findActiveTitles()).thenReturn(List.<Object[]>of(
+                new Object[] { charizard, "Charizard Holo" },
+                new Object[] { pikachuEx, "Pikachu-EX" },
+                new Object[] { pikachuGx, "Pikachu GX" }));
+
+        index = new ListingFuzzyIndex(true, 2, 1000, listingRepository, new ListingSubject());
+        index.rebuild();
+    }
+
+    @Test
+    void search_toleratesTyposInLongerWords() {
+        assertEquals(Set.of(charizard), index.search("Charzard").orElseThrow());
+        assertEquals(Set.of(charizard), index.search("charizrd hollo").orElseThrow());
+        assertEquals(Set.of(pikachuEx, pikachuGx), index.search("pikahcu").orElseThrow());
+    }
+
+    @Test
+    void search_matchesShortWordsExactlyAndIgnoresPunctuation() {
+        assertEquals(Set.of(pikachuEx), index.search("Pikachu ex").orElseThrow());
+        assertTrue(index.search("Pikachu ax").orElseThrow().isEmpty());
+    }
+
+    @Test
+    void search_leavesMoreThanMaxHitsMatchesToTheDatabase() {
+        ReflectionTestUtils.setField(index, "maxHits", 1);
+
+        assertEquals(Set.of(charizard), index.search("charzard").orElseThrow());
+        assertTrue(index.search("pikahcu").isEmpty());
+    }
+
+    @Test
+    void onListingSaved_reindexesRenamedListings() {
+        index.onListingSaved(listing(charizard, "Blastoise", ListingStatus.ACTIVE));
+
+        assertTrue(index.search("charizard").orElseThrow().isEmpty());
+        assertEquals(Set.of(charizard), index.search("blastoyse").orElseThrow());
+    }
+
+    @Test
+    void onListingSaved_dropsSoldAndDeletedListings() {
+        index.onListingSaved(listing(pikachuEx, "Pikachu-EX", ListingStatus.SOLD));
+        index.onListingSaved(listing(charizard, "Charizard Holo", ListingStatus.DELETED));
+
+        assertEquals(Set.of(pikachuGx), index.search("pikahcu").orElseThrow());
+        assertTrue(index.search("charzard").orElseThrow().isEmpty());
+    }
+
+    private static Listing listing(UUID id, String title, ListingStatus status) {
+        Listing listing = new Listing();
+        ReflectionTestUtils.setField(listing, "id", id);
+        listing.setListingTitle(title);
+        listing.setListingStatus(status);
+        return listing;
+    }
+}
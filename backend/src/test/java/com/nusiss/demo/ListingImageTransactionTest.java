@@ -0,0 +1,185 @@
+package com.nusiss.demo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nusiss.config.AuthenticateUser;
+import com.nusiss.config.ConnectionHoldMetrics;
+import com.nusiss.dto.CreateListingDTO;
+import com.nusiss.entity.Listing;
+import com.nusiss.entity.User;
+import com.nusiss.enums.Region;
+import com.nusiss.repository.ListingRepository;
+import com.nusiss.repository.UserRepository;
+import com.nusiss.service.ImageStore;
+import com.nusiss.service.ListingResultCache;
+import com.nusiss.service.ListingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Not @Transactional: createListing must be seen to upload outside any transaction and persist in its own
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource("classpath:application-test.properties")
+public class ListingImageTransactionTest {
+
+    private static final List<String> UPLOADED = List.of("https://bucket.s3.local/1_front.png", "https://bucket.s3.local/2_back.png");
+
+    @Autowired
+    private ListingService listingService;
+
+    @Autowired
+    private ListingRepository listingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ListingResultCache listingResultCache;
+
+    @Autowired
+    private ConnectionHoldMetrics connectionHoldMetrics;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private ImageStore imageStore;
+
+    private User seller;
+
+    private final AtomicBoolean uploadedInTransaction = new AtomicBoolean();
+
+    private final AtomicLong connectionsHeldDuringUpload = new AtomicLong(-1);
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setUsername("seller");
+        user.setPasswordHash(new BCryptPasswordEncoder(4).encode("Password1234!"));
+        user.setEmail("seller@gmail.com");
+        user.setName("seller");
+        user.setMobileNumber("12345678");
+        user.setRegion(Region.values()[0]);
+        seller = userRepository.save(user);
+
+        Mockito.when(imageStore.store(anyList())).thenAnswer(invocation -> {
+            uploadedInTransaction.set(TransactionSynchronizationManager.isActualTransactionActive());
+            connectionsHeldDuringUpload.set(connectionHoldMetrics.endpoints().stream()
+                    .mapToLong(connectionHoldMetrics::openConnections).sum());
+            return UPLOADED;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        List<Listing> created = listingRepository.findAll().stream()
+                .filter(listing -> listing.getSeller().getId().equals(seller.getId()))
+                .toList();
+        listingRepository.deleteAll(created);
+        userRepository.delete(seller);
+        listingResultCache.clear();
+        RequestContextHolder.resetRequestAttributes();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void createListing_uploadsOutsideTheTransactionThenSaves() throws Exception {
+        assertEquals(HttpStatus.CREATED, listingService.createListing(seller.getId(), dto("Charizard"), images()).getStatusCode());
+
+        assertFalse(uploadedInTransaction.get());
+        Listing saved = listingRepository.findAll().stream()
+                .filter(listing -> listing.getListingTitle().equals("Charizard"))
+                .findFirst().orElseThrow();
+        assertEquals(UPLOADED.get(0), saved.getMainImage());
+        Mockito.verify(imageStore, Mockito.never()).release(anyList());
+    }
+
+    @Test
+    void createListing_releasesUploadedImagesWhenTheSaveFails() throws Exception {
+        String tooLongForTheColumn = "x".repeat(300);
+
+        assertThrows(RuntimeException.class, () -> listingService.createListing(seller.getId(), dto(tooLongForTheColumn), images()));
+
+        Mockito.verify(imageStore).release(UPLOADED);
+    }
+
+    @Test
+    void connectionHoldTimeIsRecordedPerEndpoint() throws Exception {
+        connectionHoldMetrics.clear();
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/listing/create-listing");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/listing/create-listing");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        listingService.createListing(seller.getId(), dto("Charizard"), images());
+
+        assertTrue(connectionHoldMetrics.holdCount("POST /listing/create-listing") > 0);
+        assertTrue(connectionHoldMetrics.endpoints().contains("POST /listing/create-listing"));
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest("GET", "/listing/" + seller.getId())));
+        userRepository.existsById(seller.getId());
+        assertFalse(connectionHoldMetrics.endpoints().contains("GET /listing/" + seller.getId()));
+        assertTrue(connectionHoldMetrics.holdCount(ConnectionHoldMetrics.UNMATCHED) > 0);
+    }
+
+    // Through the whole web stack, so a session kept open for the request (open-in-view) would show up as a held connection
+    @Test
+    void createListing_holdsNoConnectionWhileUploading() throws Exception {
+        AuthenticateUser authenticateUser = new AuthenticateUser(seller.getId(), seller.getUsername(), seller.getPassword(), new ArrayList<>());
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(authenticateUser, null, authenticateUser.getAuthorities()));
+        connectionHoldMetrics.clear();
+
+        mockMvc.perform(multipart("/listing/create-listing")
+                        .file(new MockMultipartFile("data", "", "application/json", """
+                                {"listingTitle":"Charizard","cardCondition":"Brand New","cardType":"Pokemon Card","rarity":"Common","price":10}
+                                """.getBytes()))
+                        .file(new MockMultipartFile("images", "front.png", "image/png", new byte[]{1})))
+                .andExpect(status().isCreated());
+
+        assertEquals(0, connectionsHeldDuringUpload.get());
+        assertTrue(connectionHoldMetrics.holdCount("POST /listing/create-listing") > 0);
+        assertEquals(0, connectionHoldMetrics.openConnections("POST /listing/create-listing"));
+    }
+
+    private CreateListingDTO dto(String title) throws Exception {
+        return objectMapper.readValue("""
+                {"listingTitle":"%s","cardCondition":"Brand New","cardType":"Pokemon Card","rarity":"Common","price":10}
+                """.formatted(title), CreateListingDTO.class);
+    }
+
+    private static List<MultipartFile> images() {
+        return List.of(new MockMultipartFile("images", "front.png", "image/png", new byte[]{1}),
+                new MockMultipartFile("images", "back.png", "image/png", new byte[]{2}));
+    }
+}
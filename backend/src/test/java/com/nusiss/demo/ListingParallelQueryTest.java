@@ -0,0 +1,198 @@
+package com.nusiss.demo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nusiss.dto.GetListingDetailsDTO;
+import com.nusiss.dto.GetListingFilterDTO;
+import com.nusiss.dto.GetListingSummaryDTO;
+import com.nusiss.dto.GetListingsDTO;
+import com.nusiss.entity.Listing;
+import com.nusiss.entity.User;
+import com.nusiss.enums.*;
+import com.nusiss.repository.CartRepository;
+import com.nusiss.repository.ListingRepository;
+import com.nusiss.repository.UserRepository;
+import com.nusiss.service.CartMembershipCache;
+import com.nusiss.service.CartService;
+import com.nusiss.service.ListingResultCache;
+import com.nusiss.service.ListingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Not @Transactional: the parallel queries run on their own connections and only see committed rows,
+// so the data is committed here and removed again after each test
+@SpringBootTest
+@TestPropertySource("classpath:application-test.properties")
+public class ListingParallelQueryTest {
+
+    @Autowired
+    private ListingService listingService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private ListingRepository listingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private ListingResultCache listingResultCache;
+
+    @Autowired
+    private CartMembershipCache cartMembershipCache;
+
+    @Autowired
+    @Qualifier("listingQueryExecutor")
+    private ThreadPoolTaskExecutor listingQueryExecutor;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private User buyer;
+    private User seller;
+    private final List<Listing> listings = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        listingResultCache.clear();
+        buyer = userRepository.save(createUser("buyer", Region.values()[0]));
+        seller = userRepository.save(createUser("seller", Region.values()[1]));
+        for (int i = 0; i < 3; i++) {
+            listings.add(listingRepository.save(createListing("Charizard " + i, seller)));
+        }
+        listings.add(listingRepository.save(createListing("Own card", buyer)));
+
+        cartService.addCartItem(listings.get(1).getId(), buyer.getId());
+    }
+
+    @AfterEach
+    void tearDown() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            cartRepository.findByUser_Id(buyer.getId()).ifPresent(cartRepository::delete);
+            cartRepository.findByUser_Id(seller.getId()).ifPresent(cartRepository::delete);
+            listingRepository.deleteAll(listings);
+            userRepository.deleteAll(List.of(buyer, seller));
+        });
+        listingResultCache.clear();
+        cartMembershipCache.clear();
+    }
+
+    @Test
+    void getListings_runsCountOnTheQueryExecutor() throws Exception {
+        long tasksBefore = listingQueryExecutor.getThreadPoolExecutor().getTaskCount();
+
+        GetListingsDTO result = listingService.getListings(
+                objectMapper.readValue("{\"size\":\"2\",\"excludeCurrentUser\":true}", GetListingFilterDTO.class), buyer.getId());
+
+        assertEquals(3, result.getTotalElements());
+        assertEquals(2, result.getListings().size());
+        assertTrue(result.isHasNext());
+        assertFalse(result.getListings().get(0).getImages().isEmpty());
+
+        // The count; the page and its cart membership are loaded on the calling thread
+        assertEquals(1, listingQueryExecutor.getThreadPoolExecutor().getTaskCount() - tasksBefore);
+    }
+
+    @Test
+    void getListings_marksCartMembershipInEveryMode() throws Exception {
+        for (String filterJson : List.of(
+                "{\"excludeCurrentUser\":true}",
+                "{\"excludeCurrentUser\":true,\"totalMode\":\"approximate\"}",
+                "{\"excludeCurrentUser\":true,\"summaryOnly\":true}",
+                "{\"excludeCurrentUser\":true,\"cursor\":\"\"}")) {
+            GetListingsDTO result = listingService.getListings(objectMapper.readValue(filterJson, GetListingFilterDTO.class), buyer.getId());
+
+            Map<UUID, Boolean> inCart = result.getListings().stream()
+                    .collect(Collectors.toMap(GetListingSummaryDTO::getId, GetListingSummaryDTO::getInCart));
+            assertEquals(Map.of(listings.get(0).getId(), false, listings.get(1).getId(), true, listings.get(2).getId(), false),
+                    inCart, filterJson);
+        }
+    }
+
+    @Test
+    void getListings_cursorVisitsEveryListingOnceWhenSortValuesTie() throws Exception {
+        List<UUID> visited = new ArrayList<>();
+        String cursor = "";
+        while (cursor != null) {
+            GetListingsDTO page = listingService.getListings(objectMapper.readValue(
+                    "{\"username\":\"seller\",\"sortBy\":\"price\",\"sortOrder\":\"desc\",\"size\":\"2\",\"cursor\":\"%s\"}"
+                            .formatted(cursor), GetListingFilterDTO.class), buyer.getId());
+            page.getListings().forEach(summary -> visited.add(summary.getId()));
+            cursor = page.getNextCursor();
+        }
+
+        assertEquals(3, visited.size());
+        assertEquals(listings.subList(0, 3).stream().map(Listing::getId).collect(Collectors.toSet()), Set.copyOf(visited));
+    }
+
+    @Test
+    void getListings_doesNotCreateCartForUserWithoutOne() throws Exception {
+        GetListingsDTO result = listingService.getListings(
+                objectMapper.readValue("{\"excludeCurrentUser\":true}", GetListingFilterDTO.class), seller.getId());
+
+        assertEquals(1, result.getListings().size());
+        assertFalse(result.getListings().get(0).getInCart());
+        assertTrue(cartRepository.findByUser_Id(seller.getId()).isEmpty());
+    }
+
+    @Test
+    void getListingDetails_loadsListingAndCartMembership() {
+        GetListingDetailsDTO inCart = listingService.getListingDetails(listings.get(1).getId(), buyer.getId());
+        GetListingDetailsDTO notInCart = listingService.getListingDetails(listings.get(2).getId(), buyer.getId());
+
+        assertTrue(inCart.getInCart());
+        assertEquals(2, inCart.getImages().size());
+        assertFalse(notInCart.getInCart());
+    }
+
+    private User createUser(String username, Region region) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPasswordHash(new BCryptPasswordEncoder(4).encode("Password1234!"));
+        user.setEmail(username + "@gmail.com");
+        user.setName(username);
+        user.setMobileNumber("12345678");
+        user.setRegion(region);
+        return user;
+    }
+
+    private Listing createListing(String title, User owner) {
+        Listing listing = new Listing();
+        listing.setListingTitle(title);
+        listing.setCardCondition(CardCondition.values()[0]);
+        listing.setCardType(CardType.POKEMON_CARD);
+        listing.setRarity(Rarity.values()[0]);
+        listing.setListingStatus(ListingStatus.ACTIVE);
+        listing.setPrice(BigDecimal.TEN);
+        listing.setImages(new ArrayList<>(List.of("https://img/" + title + "-front.png", "https://img/" + title + "-back.png")));
+        listing.setDescription(title);
+        listing.setSeller(owner);
+        return listing;
+    }
+}
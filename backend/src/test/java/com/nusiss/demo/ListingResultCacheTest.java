@@ -0,0 +1,118 @@
+package com.nusiss.demo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nusiss.dto.GetListingFilterDTO;
+import com.nusiss.entity.Listing;
+import com.nusiss.entity.User;
+import com.nusiss.enums.*;
+import com.nusiss.service.ListingResultCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ListingResultCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ListingResultCache cache;
+
+    private User seller;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ListingResultCache(30, 500);
+
+        seller = new User();
+        seller.setId(UUID.randomUUID());
+        seller.setUsername("seller0");
+        seller.setRegion(Region.values()[0]);
+    }
+
+    @Test
+    void invalidate_evictsPagesWhoseFilterMatchesTheListing() throws Exception {
+        cache.put("pokemon", filter("{\"cardTypes\":[\"Pokemon Card\"]}"), null, List.of(), 0, cache.generation());
+        cache.put("yugioh", filter("{\"cardTypes\":[\"Trainer Card\"]}"), null, List.of(), 0, cache.generation());
+
+        cache.invalidate(listing(CardType.POKEMON_CARD, BigDecimal.TEN));
+
+        assertTrue(cache.get("pokemon").isEmpty());
+        assertTrue(cache.get("yugioh").isPresent());
+    }
+
+    @Test
+    void invalidate_evictsPagesContainingTheListingEvenIfItNoLongerMatches() throws Exception {
+        Listing listing = listing(CardType.POKEMON_CARD, BigDecimal.valueOf(500));
+        cache.put("cheap", filter("{\"maxPrice\":100}"), null, List.of(listing.getId()), 1, cache.generation());
+
+        cache.invalidate(listing);
+
+        assertTrue(cache.get("cheap").isEmpty());
+    }
+
+    @Test
+    void invalidate_keepsPagesOutsideThePriceRange() throws Exception {
+        cache.put("cheap", filter("{\"maxPrice\":100}"), null, List.of(), 0, cache.generation());
+
+        cache.invalidate(listing(CardType.POKEMON_CARD, BigDecimal.valueOf(500)));
+
+        assertTrue(cache.get("cheap").isPresent());
+    }
+
+    @Test
+    void get_expiresEntriesAfterTtl() throws Exception {
+        ListingResultCache expiringCache = new ListingResultCache(0, 500);
+        expiringCache.put("all", filter("{}"), null, List.of(), 0, expiringCache.generation());
+
+        Thread.sleep(5);
+
+        assertTrue(expiringCache.get("all").isEmpty());
+    }
+
+    @Test
+    void put_evictsLeastRecentlyUsedEntryWhenFull() throws Exception {
+        ListingResultCache smallCache = new ListingResultCache(30, 2);
+        smallCache.put("first", filter("{}"), null, List.of(), 0, smallCache.generation());
+        smallCache.put("second", filter("{}"), null, List.of(), 0, smallCache.generation());
+        smallCache.get("first");
+        smallCache.put("third", filter("{}"), null, List.of(), 0, smallCache.generation());
+
+        assertTrue(smallCache.get("first").isPresent());
+        assertTrue(smallCache.get("second").isEmpty());
+        assertEquals(2, smallCache.size());
+    }
+
+    @Test
+    void put_dropsPagesLoadedWhileAnEvictionHappened() throws Exception {
+        long loadedAt = cache.generation(); // A reader starts loading the page
+        cache.invalidate(listing(CardType.POKEMON_CARD, BigDecimal.TEN)); // and a writer's eviction runs meanwhile
+
+        cache.put("pokemon", filter("{\"cardTypes\":[\"Pokemon Card\"]}"), null, List.of(), 0, loadedAt);
+        assertTrue(cache.get("pokemon").isEmpty());
+
+        cache.put("pokemon", filter("{\"cardTypes\":[\"Pokemon Card\"]}"), null, List.of(), 0, cache.generation());
+        assertTrue(cache.get("pokemon").isPresent());
+    }
+
+    private GetListingFilterDTO filter(String json) throws Exception {
+        return objectMapper.readValue(json, GetListingFilterDTO.class);
+    }
+
+    private Listing listing(CardType cardType, BigDecimal price) {
+        Listing listing = new Listing();
+        ReflectionTestUtils.setField(listing, "id", UUID.randomUUID());
+        listing.setListingTitle("Pikachu");
+        listing.setCardCondition(CardCondition.values()[0]);
+        listing.setCardType(cardType);
+        listing.setRarity(Rarity.values()[0]);
+        listing.setListingStatus(ListingStatus.ACTIVE);
+        listing.setPrice(price);
+        listing.setSeller(seller);
+        return listing;
+    }
+}
@@ -0,0 +1,144 @@
+package com.nusiss.demo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nusiss.dto.GetListingFilterDTO;
+import com.nusiss.dto.GetListingsDTO;
+import com.nusiss.entity.Listing;
+import com.nusiss.entity.User;
+import com.nusiss.enums.*;
+import com.nusiss.repository.ListingRepository;
+import com.nusiss.repository.UserRepository;
+import com.nusiss.service.ListingResultCache;
+import com.nusiss.service.ListingService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.transaction.Transactional;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@Transactional
+@TestPropertySource("classpath:application-test.properties")
+public class ListingSearchQueryCountTest {
+
+    @Autowired
+    private ListingService listingService;
+
+    @Autowired
+    private ListingRepository listingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ListingResultCache listingResultCache;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<User> sellers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 3; i++) {
+            User seller = new User();
+            seller.setUsername("seller" + i);
+            seller.setPasswordHash(new BCryptPasswordEncoder(4).encode("Password1234!"));
+            seller.setEmail("seller" + i + "@gmail.com");
+            seller.setName("Seller " + i);
+            seller.setMobileNumber("12345678");
+            seller.setRegion(Region.values()[i]);
+            sellers.add(userRepository.save(seller));
+        }
+    }
+
+    @Test
+    void searchPage_statementCountDoesNotGrowWithPageSize() throws Exception {
+        createListings(5);
+        long smallPageStatements = countStatementsForSearch("{\"size\":\"100\"}");
+
+        createListings(45);
+        long largePageStatements = countStatementsForSearch("{\"size\":\"100\"}");
+
+        assertEquals(smallPageStatements, largePageStatements);
+    }
+
+    @Test
+    void cursorAndSlicePages_statementCountDoesNotGrowWithPageSize() throws Exception {
+        createListings(5);
+        long smallCursorStatements = countStatementsForSearch("{\"size\":\"100\",\"cursor\":\"\"}");
+        long smallSliceStatements = countStatementsForSearch("{\"size\":\"100\",\"totalMode\":\"none\"}");
+
+        createListings(45);
+        long largeCursorStatements = countStatementsForSearch("{\"size\":\"100\",\"cursor\":\"\"}");
+        long largeSliceStatements = countStatementsForSearch("{\"size\":\"100\",\"totalMode\":\"none\"}");
+
+        assertEquals(smallCursorStatements, largeCursorStatements);
+        assertEquals(smallSliceStatements, largeSliceStatements);
+    }
+
+    @Test
+    void summaryOnlyPage_usesProjectionWithoutLoadingImages() throws Exception {
+        createListings(5);
+        long smallSummaryStatements = countStatementsForSearch("{\"size\":\"100\",\"summaryOnly\":true,\"totalMode\":\"none\"}");
+
+        createListings(45);
+        long largeSummaryStatements = countStatementsForSearch("{\"size\":\"100\",\"summaryOnly\":true,\"totalMode\":\"none\"}");
+
+        assertEquals(1, smallSummaryStatements);
+        assertEquals(smallSummaryStatements, largeSummaryStatements);
+    }
+
+    private long countStatementsForSearch(String filterJson) throws Exception {
+        GetListingFilterDTO filter = objectMapper.readValue(filterJson, GetListingFilterDTO.class);
+
+        // Start from an empty persistence context so sellers and images really have to be loaded
+        entityManager.flush();
+        entityManager.clear();
+        listingResultCache.clear(); // Listings are saved through the repository, so nothing evicts cached pages
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        GetListingsDTO result = listingService.getListings(filter, sellers.get(0).getId());
+        result.getListings().stream()
+                .filter(listing -> listing.getImages() != null)
+                .forEach(listing -> listing.getImages().size());
+
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void createListings(int count) {
+        for (int i = 0; i < count; i++) {
+            Listing listing = new Listing();
+            listing.setListingTitle("Pikachu " + i);
+            listing.setCardCondition(CardCondition.values()[i % CardCondition.values().length]);
+            listing.setCardType(CardType.POKEMON_CARD);
+            listing.setRarity(Rarity.values()[i % Rarity.values().length]);
+            listing.setListingStatus(ListingStatus.ACTIVE);
+            listing.setPrice(BigDecimal.valueOf(10 + i));
+            listing.setImages(new ArrayList<>(List.of("https://img/" + i + "-front.png", "https://img/" + i + "-back.png")));
+            listing.setDescription("Card " + i);
+            listing.setSeller(sellers.get(i % sellers.size()));
+            listingRepository.save(listing);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.nusiss.demo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nusiss.dto.GetListingFilterDTO;
+import com.nusiss.entity.Listing;
+import com.nusiss.entity.User;
+import com.nusiss.enums.*;
+import com.nusiss.repository.ListingRepository;
+import com.nusiss.repository.UserRepository;
+import com.nusiss.service.ListingSearchService;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.nusiss.demo.RecordingStatementInspector")
+@Transactional
+@TestPropertySource("classpath:application-test.properties")
+public class ListingSearchQueryPlanTest {
+
+    // Filter shapes ListingSearchService can build with at least one indexable predicate. Searches with no filter,
+    // a title LIKE only or the current-user exclusion only have nothing to seek on; on MySQL they walk the sort
+    // indexes and stop at the LIMIT, which H2's planner does not report, so they are left out here.
+    private static final List<String> SELECTIVE_FILTERS = List.of(
+            "{\"listingStatuses\":[\"Active\"]}",
+            "{\"rarities\":[\"Rare\",\"Hyper Rare\"]}",
+            "{\"conditions\":[\"Brand New\"]}",
+            "{\"cardTypes\":[\"Trainer Card\"]}",
+            "{\"minPrice\":5,\"maxPrice\":20}",
+            "{\"minPrice\":5}",
+            "{\"regions\":[\"North Region\"]}",
+            "{\"username\":\"seller1\"}",
+            "{\"listingStatuses\":[\"Active\"],\"rarities\":[\"Hyper Rare\"]}",
+            "{\"listingStatuses\":[\"Active\"],\"conditions\":[\"Brand New\"]}",
+            "{\"listingStatuses\":[\"Active\"],\"minPrice\":5,\"maxPrice\":20}",
+            "{\"listingStatuses\":[\"Active\"],\"regions\":[\"North Region\"]}",
+            "{\"listingStatuses\":[\"Active\"],\"listingTitle\":\"pika\",\"excludeCurrentUser\":true}",
+            "{\"listingStatuses\":[\"Active\",\"Sold\"],\"rarities\":[\"Rare\"],\"conditions\":[\"Brand New\"],\"cardTypes\":[\"Pokemon Card\"],\"regions\":[\"North Region\"],\"minPrice\":1,\"maxPrice\":50}"
+    );
+
+    private static final List<String> SORTS = List.of("createdOn", "price", "rarity", "condition");
+
+    @Autowired
+    private ListingSearchService listingSearchService;
+
+    @Autowired
+    private ListingRepository listingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private UUID currentUserId;
+
+    @BeforeEach
+    void setUp() {
+        List<User> sellers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            User seller = new User();
+            seller.setUsername("seller" + i);
+            seller.setPasswordHash(new BCryptPasswordEncoder(4).encode("Password1234!"));
+            seller.setEmail("seller" + i + "@gmail.com");
+            seller.setName("Seller " + i);
+            seller.setMobileNumber("12345678");
+            seller.setRegion(Region.values()[i]);
+            sellers.add(userRepository.save(seller));
+        }
+        currentUserId = sellers.get(0).getId();
+
+        for (int i = 0; i < 200; i++) {
+            Listing listing = new Listing();
+            listing.setListingTitle("Pikachu " + i);
+            listing.setCardCondition(CardCondition.values()[i % CardCondition.values().length]);
+            listing.setCardType(CardType.values()[i % CardType.values().length]);
+            listing.setRarity(Rarity.values()[i % Rarity.values().length]);
+            listing.setListingStatus(ListingStatus.values()[i % ListingStatus.values().length]);
+            listing.setPrice(BigDecimal.valueOf(i % 60));
+            listing.setImages(new ArrayList<>(List.of("https://img/" + i + ".png")));
+            listing.setSeller(sellers.get(i % sellers.size()));
+            listingRepository.save(listing);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void selectiveFilters_neverScanATable() throws Exception {
+        for (String filter : SELECTIVE_FILTERS) {
+            for (String plan : explainSearches(filter)) {
+                assertTrue(!plan.contains("tableScan"), "Full scan for " + filter + ":\n" + plan);
+            }
+        }
+    }
+
+    // Runs every sort of a filter through the page, slice and projection queries and returns the plans
+    private List<String> explainSearches(String filterJson) throws Exception {
+        List<String> plans = new ArrayList<>();
+
+        for (String sortBy : SORTS) {
+            for (String sortOrder : List.of("asc", "desc")) {
+                GetListingFilterDTO filter = objectMapper.readValue(withSort(filterJson, sortBy, sortOrder), GetListingFilterDTO.class);
+
+                RecordingStatementInspector.drain();
+                listingSearchService.searchListings(filter, currentUserId).getTotalElements();
+                listingSearchService.sliceListings(filter, currentUserId);
+                listingSearchService.searchListingSummaries(filter, currentUserId);
+
+                for (String sql : RecordingStatementInspector.drain()) {
+                    if (sql.startsWith("select") && sql.contains("from listing")) {
+                        plans.add(explain(sql));
+                    }
+                }
+            }
+        }
+
+        return plans;
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.query(connection -> connection.prepareStatement("EXPLAIN " + sql),
+                resultSet -> resultSet.next() ? resultSet.getString(1) : "");
+    }
+
+    private String withSort(String filterJson, String sortBy, String sortOrder) {
+        String sort = "\"sortBy\":\"" + sortBy + "\",\"sortOrder\":\"" + sortOrder + "\"}";
+        return filterJson.equals("{}") ? "{" + sort : filterJson.substring(0, filterJson.length() - 1) + "," + sort;
+    }
+}
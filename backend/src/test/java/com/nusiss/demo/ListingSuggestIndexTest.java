@@ -0,0 +1,100 @@
+package com.nusiss.demo;
+
+import com.nusiss.dto.GetListingSuggestionDTO;
+import com.nusiss.entity.Listing;
+import com.nusiss.enums.ListingStatus;
+import com.nusiss.patterns.observer.ListingSubject;
+import com.nusiss.repository.ListingRepository;
+import com.nusiss.service.ListingSuggestIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ListingSuggestIndexTest {
+
+    private ListingRepository listingRepository;
+
+    private ListingSuggestIndex index;
+
+    @BeforeEach
+    void setUp() {
+        listingRepository = Mockito.mock(ListingRepository.class);
+        Mockito.when(listingRepository.findActiveTitles()).thenReturn(List.<Object[]>of(
+                new Object[] { UUID.randomUUID(), "Charizard ex" },
+                new Object[] { UUID.randomUUID(), "Charizard VMAX" },
+                new Object[] { UUID.randomUUID(), "Dark Charizard" },
+                new Object[] { UUID.randomUUID(), "Charmander" },
+                new Object[] { UUID.randomUUID(), "Chansey" }));
+
+        index = new ListingSuggestIndex(listingRepository, new ListingSubject());
+        index.rebuild();
+    }
+
+    @Test
+    void suggest_returnsMostPopularCompletionsFirst() {
+        List<GetListingSuggestionDTO> suggestions = index.suggest("Cha", 2);
+
+        assertEquals(List.of("charizard", "chansey"), texts(suggestions));
+        assertEquals(3, suggestions.get(0).getListingCount());
+    }
+
+    @Test
+    void suggest_completesOnlyTheLastWord() {
+        assertEquals(List.of("dark charizard", "dark charmander"), texts(index.suggest("Dark char", 2)));
+    }
+
+    @Test
+    void suggest_completesTheWordAfterPunctuation() {
+        index.onListingSaved(listing("Pikachu-EX", ListingStatus.ACTIVE));
+
+        assertEquals(List.of("pikachu-ex"), texts(index.suggest("Pikachu-e", 5)));
+        assertTrue(index.suggest("pikachu-", 5).isEmpty());
+    }
+
+    @Test
+    void onListingSaved_removesWordsOfRenamedAndSoldListings() {
+        Listing listing = listing("Mewtwo GX", ListingStatus.ACTIVE);
+        index.onListingSaved(listing);
+        assertEquals(List.of("mewtwo"), texts(index.suggest("mew", 5)));
+
+        listing.setListingTitle("Mew V");
+        index.onListingSaved(listing);
+        assertEquals(List.of("mew"), texts(index.suggest("mew", 5)));
+
+        listing.setListingStatus(ListingStatus.SOLD);
+        index.onListingSaved(listing);
+        assertTrue(index.suggest("mew", 5).isEmpty());
+    }
+
+    @Test
+    void onListingSaved_madeWhileRebuildingIsReplayed() {
+        Listing mewtwo = listing("Mewtwo GX", ListingStatus.ACTIVE);
+        Mockito.when(listingRepository.findActiveTitles()).thenAnswer(invocation -> {
+            index.onListingSaved(mewtwo); // Commits after the titles were read
+            return List.<Object[]>of(new Object[] { UUID.randomUUID(), "Chansey" });
+        });
+
+        index.rebuild();
+
+        assertEquals(List.of("mewtwo"), texts(index.suggest("mew", 5)));
+        assertEquals(List.of("chansey"), texts(index.suggest("cha", 5)));
+    }
+
+    private Listing listing(String title, ListingStatus status) {
+        Listing listing = new Listing();
+        ReflectionTestUtils.setField(listing, "id", UUID.randomUUID());
+        listing.setListingTitle(title);
+        listing.setListingStatus(status);
+        return listing;
+    }
+
+    private List<String> texts(List<GetListingSuggestionDTO> suggestions) {
+        return suggestions.stream().map(GetListingSuggestionDTO::getText).toList();
+    }
+}
@@ -0,0 +1,83 @@
+package com.nusiss.demo;
+
+import com.nusiss.entity.Listing;
+import com.nusiss.patterns.observer.ListingSubject;
+import com.nusiss.repository.ListingRepository;
+import com.nusiss.service.ListingTextIndex;
+import org.apache.lucene.index.IndexWriter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// An index on disk, opened the way a restart would open it
+public class ListingTextIndexTest {
+
+    @TempDir
+    private Path path;
+
+    private ListingRepository listingRepository;
+
+    private final UUID charizard = UUID.randomUUID();
+    private final List<Object[]> rows = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        listingRepository = Mockito.mock(ListingRepository.class);
+        rows.add(new Object[]{charizard, "Charizard Holo", "Base set"});
+        Mockito.when(listingRepository.findTextIndexRows()).thenReturn(rows);
+    }
+
+    @Test
+    void restartAfterCleanClose_keepsTheIndexAndItsUpdates() throws Exception {
+        ListingTextIndex first = open();
+        UUID blastoise = UUID.randomUUID();
+        first.onListingSaved(listing(blastoise, "Blastoise"));
+        first.close();
+
+        ListingTextIndex second = open();
+        Mockito.verify(listingRepository, Mockito.times(1)).findTextIndexRows();
+        assertEquals(Optional.of(Set.of(blastoise)), second.matchingIds("blastoise"));
+        second.close();
+    }
+
+    @Test
+    void restartAfterCrash_rebuildsFromTheDatabase() throws Exception {
+        ListingTextIndex first = open();
+        UUID blastoise = UUID.randomUUID();
+        first.onListingSaved(listing(blastoise, "Blastoise"));
+        rows.add(new Object[]{blastoise, "Blastoise", null});
+        ((IndexWriter) ReflectionTestUtils.getField(first, "indexWriter")).rollback(); // Drops what was not committed, like a crash
+
+        ListingTextIndex second = open();
+        Mockito.verify(listingRepository, Mockito.times(2)).findTextIndexRows();
+        assertEquals(Optional.of(Set.of(blastoise)), second.matchingIds("blastoise"));
+        second.close();
+    }
+
+    private ListingTextIndex open() {
+        ApplicationArguments arguments = new DefaultApplicationArguments();
+        ListingTextIndex index = new ListingTextIndex(true, path.toString(), 1000, listingRepository, new ListingSubject(), arguments);
+        index.onStartup();
+        return index;
+    }
+
+    private static Listing listing(UUID id, String title) {
+        Listing listing = new Listing();
+        ReflectionTestUtils.setField(listing, "id", id);
+        listing.setListingTitle(title);
+        return listing;
+    }
+}
@@ -0,0 +1,127 @@
+package com.nusiss.demo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nusiss.dto.GetListingFilterDTO;
+import com.nusiss.entity.Listing;
+import com.nusiss.entity.User;
+import com.nusiss.enums.*;
+import com.nusiss.repository.ListingRepository;
+import com.nusiss.repository.UserRepository;
+import com.nusiss.service.ListingSearchService;
+import com.nusiss.service.ListingTextIndex;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "listing.text-index.enabled=true")
+@Transactional
+@TestPropertySource("classpath:application-test.properties")
+public class ListingTextSearchTest {
+
+    @Autowired
+    private ListingSearchService listingSearchService;
+
+    @Autowired
+    private ListingTextIndex listingTextIndex;
+
+    @Autowired
+    private ListingRepository listingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private User seller;
+
+    @BeforeEach
+    void setUp() {
+        seller = new User();
+        seller.setUsername("textseller");
+        seller.setPasswordHash(new BCryptPasswordEncoder(4).encode("Password1234!"));
+        seller.setEmail("textseller@gmail.com");
+        seller.setName("Text Seller");
+        seller.setMobileNumber("12345678");
+        seller.setRegion(Region.CENTRAL_REGION);
+        seller = userRepository.save(seller);
+
+        save("Charizard Holo", "Base set, light play", ListingStatus.ACTIVE);
+        save("Blastoise", "Comes with a Charizard holo sleeve", ListingStatus.ACTIVE);
+        save("Charizard Holo", "First edition", ListingStatus.SOLD);
+        save("Pikachu", "Yellow cheeks promo", ListingStatus.ACTIVE);
+        listingRepository.flush();
+
+        listingTextIndex.rebuild();
+    }
+
+    @Test
+    void relevanceSort_ranksTitleMatchesAboveDescriptionMatches() throws Exception {
+        Page<Listing> result = search("{\"searchText\":\"charizard holo\",\"sortBy\":\"relevance\"}");
+
+        assertEquals(3, result.getTotalElements());
+        assertEquals("Blastoise", result.getContent().get(2).getListingTitle());
+    }
+
+    @Test
+    void textQuery_combinesWithFilters() throws Exception {
+        Page<Listing> result = search("{\"searchText\":\"CHARIZARD\",\"sortBy\":\"relevance\",\"listingStatuses\":[\"Active\"]}");
+
+        assertEquals(2, result.getTotalElements());
+        assertTrue(result.getContent().stream().allMatch(listing -> listing.getListingStatus() == ListingStatus.ACTIVE));
+    }
+
+    @Test
+    void textQuery_matchesDescriptionsWithOtherSorts() throws Exception {
+        Page<Listing> result = search("{\"searchText\":\"promo cheeks\",\"sortBy\":\"price\"}");
+
+        assertEquals(List.of("Pikachu"), result.getContent().stream().map(Listing::getListingTitle).toList());
+        assertEquals(0, search("{\"searchText\":\"mewtwo\"}").getTotalElements());
+    }
+
+    @Test
+    void textQuery_keepsEveryMatchBeyondTheHitCapForOtherSorts() throws Exception {
+        int maxHits = (int) ReflectionTestUtils.getField(listingTextIndex, "maxHits");
+        ReflectionTestUtils.setField(listingTextIndex, "maxHits", 2);
+        try {
+            assertEquals(2, search("{\"searchText\":\"charizard\",\"sortBy\":\"relevance\"}").getTotalElements());
+            assertEquals(3, search("{\"searchText\":\"charizard\",\"sortBy\":\"price\"}").getTotalElements());
+            assertEquals(3, listingSearchService.countListings(
+                    objectMapper.readValue("{\"searchText\":\"charizard\"}", GetListingFilterDTO.class), seller.getId()));
+        } finally {
+            ReflectionTestUtils.setField(listingTextIndex, "maxHits", maxHits);
+        }
+    }
+
+    private Page<Listing> search(String filterJson) throws Exception {
+        GetListingFilterDTO filter = objectMapper.readValue(filterJson, GetListingFilterDTO.class);
+        return listingSearchService.searchListings(filter, seller.getId());
+    }
+
+    private void save(String title, String description, ListingStatus status) {
+        Listing listing = new Listing();
+        listing.setListingTitle(title);
+        listing.setDescription(description);
+        listing.setCardCondition(CardCondition.values()[0]);
+        listing.setCardType(CardType.POKEMON_CARD);
+        listing.setRarity(Rarity.COMMON);
+        listing.setListingStatus(status);
+        listing.setPrice(BigDecimal.TEN);
+        listing.setImages(new ArrayList<>(List.of("https://img/" + UUID.randomUUID() + ".png")));
+        listing.setSeller(seller);
+        listingRepository.save(listing);
+    }
+}
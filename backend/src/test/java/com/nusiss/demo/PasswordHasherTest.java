@@ -0,0 +1,71 @@
+package com.nusiss.demo;
+
+import com.nusiss.exception.PasswordHashingBusyException;
+import com.nusiss.service.PasswordHasher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PasswordHasherTest {
+
+    private ThreadPoolTaskExecutor executor;
+    private PasswordHasher passwordHasher;
+
+    @BeforeEach
+    void setUp() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        passwordHasher = new PasswordHasher(executor, 5, 5000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void hashesAndVerifiesOnThePool() {
+        String hash = passwordHasher.encode("Password1234!");
+
+        assertTrue(hash.startsWith("$2a$05$"));
+        assertTrue(passwordHasher.matches("Password1234!", hash));
+        assertFalse(passwordHasher.matches("WrongPassword1!", hash));
+    }
+
+    @Test
+    void rejectsAtOnceWhenThePoolIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) { // One running, one queued
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        try {
+            assertThrows(PasswordHashingBusyException.class, () -> passwordHasher.encode("Password1234!"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void hashesBelowTheConfiguredCostAskForAnUpgrade() {
+        assertTrue(passwordHasher.upgradeEncoding(new BCryptPasswordEncoder(4).encode("Password1234!")));
+        assertFalse(passwordHasher.upgradeEncoding(passwordHasher.encode("Password1234!")));
+    }
+}
@@ -0,0 +1,27 @@
+package com.nusiss.demo;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Collects the SQL Hibernate prepares so tests can run EXPLAIN on the exact statements the search issues
+public class RecordingStatementInspector implements StatementInspector {
+
+    private static final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public String inspect(String sql) {
+        statements.add(sql);
+        return sql;
+    }
+
+    public static List<String> drain() {
+        synchronized (statements) {
+            List<String> recorded = new ArrayList<>(statements);
+            statements.clear();
+            return recorded;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.nusiss.demo;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import com.nusiss.service.S3Service;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+// AmazonS3 is stood in for by a mock whose puts take a fixed time per key, so only the service's own scheduling is measured
+public class S3ServiceTest {
+
+    private static final String BUCKET = "test-bucket";
+
+    private final AmazonS3 amazonS3 = Mockito.mock(AmazonS3.class);
+    private final Map<String, Long> putDelayMillis = new ConcurrentHashMap<>();
+    private final Set<String> stored = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private ThreadPoolTaskExecutor executor;
+    private S3Service s3Service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(8);
+        executor.initialize();
+        s3Service = new S3Service(amazonS3, executor, executor, 5000);
+        ReflectionTestUtils.setField(s3Service, "bucketName", BUCKET);
+        ReflectionTestUtils.setField(s3Service, "multipartThresholdBytes", 512L);
+        ReflectionTestUtils.setField(s3Service, "partSizeBytes", 256);
+        ReflectionTestUtils.setField(s3Service, "partsInFlight", 2);
+
+        Mockito.when(amazonS3.putObject(any(PutObjectRequest.class))).thenAnswer(invocation -> {
+            PutObjectRequest request = invocation.getArgument(0);
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                long delay = putDelayMillis.getOrDefault(request.getKey(), 0L);
+                if (delay < 0) {
+                    throw new IllegalStateException("S3 unavailable");
+                }
+                Thread.sleep(delay);
+                stored.add(request.getKey());
+                return new PutObjectResult();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        Mockito.when(amazonS3.getUrl(eq(BUCKET), anyString()))
+                .thenAnswer(invocation -> new URL("https://" + BUCKET + ".s3.local/" + invocation.getArgument(1)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void uploadFiles_takesAboutAsLongAsTheSlowestImage() {
+        putDelayMillis.putAll(Map.of("a.png", 300L, "b.png", 300L, "c.png", 300L, "d.png", 300L, "e.png", 300L));
+        List<String> names = List.of("a.png", "b.png", "c.png", "d.png", "e.png");
+
+        long start = System.nanoTime();
+        List<S3Service.UploadedFile> uploaded = s3Service.uploadFiles(files(names), names);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(5, uploaded.size());
+        assertEquals(5, maxInFlight.get());
+        assertTrue(elapsedMillis < 1000, "Five 300 ms uploads took " + elapsedMillis + " ms"); // 1500 ms one after another
+    }
+
+    @Test
+    void uploadFiles_keepsTheOrderOfTheFiles() {
+        putDelayMillis.putAll(Map.of("first.png", 200L, "second.png", 0L, "third.png", 100L));
+
+        List<String> names = List.of("first.png", "second.png", "third.png");
+
+        List<S3Service.UploadedFile> uploaded = s3Service.uploadFiles(files(names), names);
+
+        assertEquals(names, uploaded.stream().map(S3Service.UploadedFile::getKey).toList());
+        assertTrue(uploaded.get(0).getUrl().endsWith("/first.png"));
+    }
+
+    @Test
+    void uploadFiles_throwsOnlyOnceTheUploadsAlreadyRunningHaveFinished() throws Exception {
+        putDelayMillis.putAll(Map.of("ok.png", 0L, "broken.png", -1L, "slow.png", 300L));
+        List<String> names = List.of("ok.png", "broken.png", "slow.png");
+
+        assertThrows(RuntimeException.class, () -> s3Service.uploadFiles(files(names), names));
+
+        // Nothing lands after the caller has been told, so it can clean up what did
+        assertEquals(0, inFlight.get());
+        Set<String> storedWhenThrown = Set.copyOf(stored);
+        Thread.sleep(400);
+        assertEquals(storedWhenThrown, stored);
+    }
+
+    @Test
+    void upload_reportsTheDigestAndTheContentTypeFromTheFileItself() throws Exception {
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 1, 2, 3};
+        ArgumentCaptor<PutObjectRequest> put = ArgumentCaptor.forClass(PutObjectRequest.class);
+
+        S3Service.UploadedFile uploaded = s3Service.upload(new MockMultipartFile("images", "scan.bin", "application/octet-stream", png), "scan");
+
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(png)), uploaded.getSha256());
+        assertEquals("image/png", uploaded.getContentType());
+        assertEquals(png.length, uploaded.getSize());
+        Mockito.verify(amazonS3).putObject(put.capture());
+        assertEquals("image/png", put.getValue().getMetadata().getContentType());
+        assertEquals(png.length, put.getValue().getMetadata().getContentLength());
+    }
+
+    @Test
+    void upload_sendsLargeFilesAsOrderedMultipartParts() throws Exception {
+        byte[] large = new byte[1000];
+        new Random(1).nextBytes(large);
+        List<byte[]> received = Collections.synchronizedList(new ArrayList<>());
+        stubMultipart(received, -1);
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+
+        S3Service.UploadedFile uploaded = s3Service.upload(new MockMultipartFile("images", "scan.png", "image/png", large), "scan");
+
+        Mockito.verify(amazonS3, Mockito.never()).putObject(any(PutObjectRequest.class));
+        Mockito.verify(amazonS3).completeMultipartUpload(complete.capture());
+        assertEquals(List.of(1, 2, 3, 4), complete.getValue().getPartETags().stream().map(PartETag::getPartNumber).toList());
+        assertEquals(1000, received.stream().mapToInt(part -> part.length).sum());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(large)), uploaded.getSha256());
+    }
+
+    @Test
+    void upload_abortsTheMultipartUploadWhenAPartFails() {
+        stubMultipart(Collections.synchronizedList(new ArrayList<>()), 2);
+
+        assertThrows(RuntimeException.class, () -> s3Service.upload(new MockMultipartFile("images", "scan.png", "image/png", new byte[1000]), "scan"));
+
+        Mockito.verify(amazonS3).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        Mockito.verify(amazonS3, Mockito.never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    private void stubMultipart(List<byte[]> received, int failingPart) {
+        InitiateMultipartUploadResult initiated = new InitiateMultipartUploadResult();
+        initiated.setUploadId("upload-1");
+        Mockito.when(amazonS3.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).thenReturn(initiated);
+        Mockito.when(amazonS3.uploadPart(any(UploadPartRequest.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            if (request.getPartNumber() == failingPart) {
+                throw new IllegalStateException("S3 unavailable");
+            }
+            received.add(request.getInputStream().readAllBytes());
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("etag-" + request.getPartNumber());
+            return result;
+        });
+    }
+
+    private static List<MultipartFile> files(List<String> names) {
+        return names.stream()
+                .<MultipartFile>map(name -> new MockMultipartFile("images", name, "image/png", new byte[]{1, 2, 3}))
+                .toList();
+    }
+
+}
@@ -21,6 +21,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
@@ -55,7 +56,7 @@ public class UserControllerIntegrationTest {
         // Insert an existing user with username "existingUsername"
         User user = new User();
         user.setUsername("existingUsername");
-        user.setPassword("Password1234!");
+        user.setPasswordHash(new BCryptPasswordEncoder(4).encode("Password1234!"));
         user.setEmail("existingUser@gmail.com");
         user.setName("existing Name");
         user.setMobileNumber("12345678");
@@ -75,7 +76,7 @@ public class UserControllerIntegrationTest {
         // Insert a conflicting username
         User conflictingUser = new User();
         conflictingUser.setUsername("newUsername123");
-        conflictingUser.setPassword("Password1234!");
+        conflictingUser.setPasswordHash(new BCryptPasswordEncoder(4).encode("Password1234!"));
         conflictingUser.setEmail("newUser123@gmail.com");
         conflictingUser.setName("New Name");
         conflictingUser.setMobileNumber("87654321");
@@ -6,10 +6,12 @@ import com.nusiss.entity.User;
 import com.nusiss.enums.Region;
 import com.nusiss.exception.UserNotFoundException;
 import com.nusiss.repository.UserRepository;
+import com.nusiss.service.CredentialVersions;
+import com.nusiss.service.ListingResultCache;
+import com.nusiss.service.PasswordHasher;
 import com.nusiss.service.UserService;
 import com.nusiss.service.ValidationService;
 import com.nusiss.util.ChangeTrackerUtil;
-import com.nusiss.util.PasswordUtil;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -21,6 +23,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 
@@ -45,6 +48,15 @@ public class UserServiceTest {
     @Mock
     private ValidationService validationService;
 
+    @Mock
+    private ListingResultCache listingResultCache;
+
+    @Mock
+    private CredentialVersions credentialVersions;
+
+    @Mock
+    private PasswordHasher passwordHasher;
+
     @Test
     public void testGetUserById_UserExists() {
         // Arrange
@@ -52,7 +64,7 @@ public class UserServiceTest {
         mockUser.setId(UUID.fromString("4a86cf4f-c72a-4668-8e5b-be95f83e82ce"));
         mockUser.setUsername("JohnDoe");
         mockUser.setName("John Doe");
-        mockUser.setPassword("Password1234!");
+        mockUser.setPasswordHash(new BCryptPasswordEncoder(4).encode("Password1234!"));
         mockUser.setEmail("johndoe@gmail.com");
         mockUser.setRegion(Region.NORTH_EAST_REGION);
         mockUser.setMobileNumber("12345678");
@@ -218,7 +230,7 @@ public class UserServiceTest {
         mockUser.setId(UUID.fromString("4a86cf4f-c72a-4668-8e5b-be95f83e82ce"));
         mockUser.setUsername("JohnDoe");
         mockUser.setName("John Doe");
-        mockUser.setPassword("Password1234!");
+        mockUser.setPasswordHash(new BCryptPasswordEncoder(4).encode("Password1234!"));
         mockUser.setEmail("johndoe@gmail.com");
         mockUser.setRegion(Region.NORTH_EAST_REGION);
         mockUser.setMobileNumber("12345678");
@@ -230,7 +242,7 @@ public class UserServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals("JohnDoe", result.getUsername());
-        assertTrue(PasswordUtil.matches("Password1234!", result.getPassword()));
+        assertTrue(new BCryptPasswordEncoder().matches("Password1234!", result.getPassword()));
     }
 
 }